@@ -1,7 +1,11 @@
 package ch.epfl.tchu;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Multiensemble trié et immuable.
@@ -13,13 +17,28 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
     // Invariant : toutes les multiplicités sont strictement positives (> 0).
     private final SortedMap<E, Integer> elements;
 
+    // Éléments distincts, dans l'ordre, et nombre cumulé d'éléments jusqu'à chacun d'eux (inclus) :
+    // l'élément d'index i du multiensemble est keys[j] pour le plus petit j tel que i < ends[j].
+    private final Object[] keys;
+    private final int[] ends;
+    private final int hashCode;
+
+    // Multiensemble vide, partagé par tous les types d'éléments.
+    private static final SortedBag<?> EMPTY = new SortedBag<String>(new TreeMap<>());
+
+    // Cache (borné, partagé) des résultats de subsetsOfSize, indexé par la paire (multiensemble, taille).
+    // Les consultations ne sont pas sérialisées ; le cache est simplement vidé lorsqu'il est plein.
+    private static final int SUBSETS_CACHE_CAPACITY = 1024;
+    private static final Map<List<Object>, Set<?>> SUBSETS_CACHE = new ConcurrentHashMap<>();
+
     /**
      * Crée un multiensemble vide.
      * @param <E> le type des éléments du multiensemble.
      * @return un multiensemble vide.
      */
+    @SuppressWarnings("unchecked")
     public static <E extends Comparable<E>> SortedBag<E> of() {
-        return new SortedBag<E>(new TreeMap<>());
+        return (SortedBag<E>) EMPTY;
     }
 
     /**
@@ -82,6 +101,17 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
     private SortedBag(SortedMap<E, Integer> elements) {
         assert elements.values().stream().allMatch(n -> n > 0);
         this.elements = Collections.unmodifiableSortedMap(elements);
+        this.keys = new Object[elements.size()];
+        this.ends = new int[elements.size()];
+        var i = 0;
+        var end = 0;
+        for (var e : elements.entrySet()) {
+            end += e.getValue();
+            keys[i] = e.getKey();
+            ends[i] = end;
+            i += 1;
+        }
+        this.hashCode = elements.hashCode();
     }
 
     /**
@@ -89,7 +119,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      * @return vrai ssi le multiensemble est vide.
      */
     public boolean isEmpty() {
-        return elements.isEmpty();
+        return keys.length == 0;
     }
 
     /**
@@ -97,9 +127,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      * @return le nombre d'éléments dans le multiensemble.
      */
     public int size() {
-        return elements.values().stream()
-                .mapToInt(Integer::intValue)
-                .sum();
+        return keys.length == 0 ? 0 : ends[ends.length - 1];
     }
 
     /**
@@ -138,13 +166,14 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      */
     public E get(int index) {
         Objects.checkIndex(index, size());
-        for (var elementsAndCount : elements.entrySet()) {
-            var count = elementsAndCount.getValue();
-            if (index < count)
-                return elementsAndCount.getKey();
-            index -= count;
-        }
-        throw new Error(); // ne devrait jamais se produire
+        // Les nombres cumulés étant strictement croissants, index apparaît au plus une fois dans ends.
+        var i = Arrays.binarySearch(ends, index);
+        return key(i >= 0 ? i + 1 : -(i + 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private E key(int i) {
+        return (E) keys[i];
     }
 
     /**
@@ -170,8 +199,37 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
         return new SortedBag<>(newElements);
     }
 
+    /**
+     * Retourne l'union du multiensemble récepteur et de tous les multiensembles donnés,
+     * calculée en une seule passe (une seule copie de la table des multiplicités).
+     * @param those les multiensembles à combiner avec le récepteur
+     * @return l'union de <code>this</code> et de tous les multiensembles de <code>those</code>
+     */
+    @SafeVarargs
+    public final SortedBag<E> unionAll(SortedBag<E>... those) {
+        Builder<E> builder = new Builder<E>().add(this);
+        for (var that : those)
+            builder.add(that);
+        return builder.build();
+    }
+
+    /**
+     * Retourne la différence entre le multiensemble récepteur et l'union de tous les multiensembles donnés,
+     * calculée en une seule passe (une seule copie de la table des multiplicités).
+     * @param those les multiensembles à retirer du récepteur
+     * @return la différence entre <code>this</code> et l'union des multiensembles de <code>those</code>
+     */
+    @SafeVarargs
+    public final SortedBag<E> differenceAll(SortedBag<E>... those) {
+        Builder<E> builder = new Builder<E>().add(this);
+        for (var that : those)
+            builder.remove(that);
+        return builder.build();
+    }
+
     /**
      * Retourne tous les sous-ensembles du multiensemble ayant une taille donnée.
+     * L'ensemble retourné est immuable, et les résultats récents sont mémorisés.
      * @param size la taille des sous-ensembles à retourner
      * @return l'ensemble des sous-ensembles de <code>this</code> de taille <code>size</code>
      * @throws IllegalArgumentException si <code>size</code> n'est pas comprise entre 0 et
@@ -182,14 +240,54 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
         if (size == 0)
             return Set.of(SortedBag.of());
 
-        var result = new HashSet<SortedBag<E>>();
-        for (var e1 : elements.keySet()) {
-            var s1 = SortedBag.of(e1);
-            this.difference(s1)
-                    .subsetsOfSize(size - 1)
-                    .forEach(e -> result.add(s1.union(e)));
+        var key = List.<Object>of(this, size);
+        @SuppressWarnings("unchecked")
+        var subsets = (Set<SortedBag<E>>) SUBSETS_CACHE.get(key);
+        if (subsets == null) {
+            subsets = Collections.unmodifiableSet(computeSubsetsOfSize(size));
+            if (SUBSETS_CACHE.size() >= SUBSETS_CACHE_CAPACITY)
+                SUBSETS_CACHE.clear();
+            SUBSETS_CACHE.put(key, subsets);
         }
-        return result;
+        return subsets;
+    }
+
+    private Set<SortedBag<E>> computeSubsetsOfSize(int size) {
+        return subsetsStream(size).collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Retourne un flot paresseux des sous-ensembles du multiensemble ayant une taille donnée,
+     * chacun n'apparaissant qu'une seule fois.
+     * @param size la taille des sous-ensembles à produire
+     * @return un flot des sous-ensembles de <code>this</code> de taille <code>size</code>
+     * @throws IllegalArgumentException si <code>size</code> n'est pas comprise entre 0 et
+     * la taille du multiensemble
+     */
+    public Stream<SortedBag<E>> subsetsStream(int size) {
+        return subsetsStream(size, null);
+    }
+
+    /**
+     * Retourne un flot paresseux des sous-ensembles du multiensemble ayant une taille donnée,
+     * chacun n'apparaissant qu'une seule fois, par ordre croissant de multiplicité de l'élément donné.
+     * Le flot peut être interrompu à tout moment et être découpé pour un traitement parallèle.
+     * @param size la taille des sous-ensembles à produire
+     * @param first l'élément dont la multiplicité détermine l'ordre des sous-ensembles
+     * @return un flot des sous-ensembles de <code>this</code> de taille <code>size</code>,
+     * triés par multiplicité croissante de <code>first</code>
+     * @throws IllegalArgumentException si <code>size</code> n'est pas comprise entre 0 et
+     * la taille du multiensemble
+     */
+    public Stream<SortedBag<E>> subsetsStream(int size, E first) {
+        Preconditions.checkArgument(0 <= size && size <= size());
+        if (size == 0)
+            return Stream.of(SortedBag.of());
+
+        var keys = new ArrayList<>(elements.keySet());
+        if (first != null && keys.remove(first))
+            keys.add(0, first);
+        return StreamSupport.stream(new SubsetSpliterator<>(this, keys, size), false);
     }
 
     /**
@@ -198,7 +296,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      */
     public List<E> toList() {
         var list = new ArrayList<E>(size());
-        elements.forEach((v, n) -> list.addAll(Collections.nCopies(n, v)));
+        forEach(list::add);
         return list;
     }
 
@@ -207,9 +305,17 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      * @return un flot des éléments de <code>this</code>
      */
     public Stream<E> stream() {
-        var builder = Stream.<E>builder();
-        elements.forEach((v, n) -> { for (var i = 0; i < n; i++) builder.add(v); });
-        return builder.build();
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Retourne un itérateur décomposable sur les éléments du multiensemble, dans l'ordre.
+     * @return un itérateur décomposable sur les éléments de <code>this</code>
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(iterator(), size(),
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
     }
 
     /**
@@ -218,7 +324,25 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      */
     @Override
     public Iterator<E> iterator() {
-        return stream().iterator();
+        return new Iterator<>() {
+            private int index = 0;
+            private int keyIndex = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                if (index == ends[keyIndex])
+                    keyIndex += 1;
+                index += 1;
+                return key(keyIndex);
+            }
+        };
     }
 
     /**
@@ -245,7 +369,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      */
     @Override
     public int hashCode() {
-        return elements.hashCode();
+        return hashCode;
     }
 
     /**
@@ -255,8 +379,10 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      */
     @Override
     public boolean equals(Object that) {
-        return (that instanceof SortedBag<?>)
-                && (elements.equals(((SortedBag<?>) that).elements));
+        return (this == that)
+                || ((that instanceof SortedBag<?>)
+                    && hashCode == that.hashCode()
+                    && elements.equals(((SortedBag<?>) that).elements));
     }
 
     /**
@@ -270,12 +396,152 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
         return j.toString();
     }
 
+    // Énumère itérativement les vecteurs de multiplicités (x0, ..., xk-1) tels que
+    // 0 <= xi <= ni et x0 + ... + xk-1 = size, par ordre lexicographique croissant
+    // (x0 étant la multiplicité du premier élément de keys, et ainsi de suite).
+    // Chaque sous-ensemble n'étant produit qu'une seule fois, aucun dédoublonnage n'est nécessaire.
+    // Le découpage se fait sur les valeurs restantes de x0.
+    // ways[i][n] est le nombre de vecteurs (xi, ..., xk-1) de somme n, ce qui permet de connaître
+    // le nombre exact de sous-ensembles restant à produire (sauf s'il dépasse Long.MAX_VALUE).
+    private static final class SubsetSpliterator<E extends Comparable<E>> implements Spliterator<SortedBag<E>> {
+        private final List<E> keys;
+        private final int[] max;
+        private final int[] suffixSum;
+        private final long[][] ways;
+        private final boolean sized;
+        private final int[] counts;
+        private boolean hasNext;
+
+        SubsetSpliterator(SortedBag<E> bag, List<E> keys, int size) {
+            var k = keys.size();
+            this.keys = keys;
+            this.max = new int[k];
+            this.suffixSum = new int[k + 1];
+            for (var i = k - 1; i >= 0; i--) {
+                max[i] = bag.countOf(keys.get(i));
+                suffixSum[i] = suffixSum[i + 1] + max[i];
+            }
+            this.ways = new long[k + 1][size + 1];
+            ways[k][0] = 1;
+            for (var i = k - 1; i >= 0; i--) {
+                for (var n = 0; n <= size; n++) {
+                    for (var x = 0; x <= Math.min(max[i], n); x++)
+                        ways[i][n] = saturatedAdd(ways[i][n], ways[i + 1][n - x]);
+                }
+            }
+            this.sized = ways[0][size] < Long.MAX_VALUE;
+            this.counts = new int[k];
+            this.hasNext = true;
+            fillMinimally(0, size);
+        }
+
+        private SubsetSpliterator(SubsetSpliterator<E> that, int lastFirstCount) {
+            this.keys = that.keys;
+            this.max = that.max.clone();
+            this.max[0] = lastFirstCount;
+            this.suffixSum = that.suffixSum;
+            this.ways = that.ways;
+            this.sized = that.sized;
+            this.counts = that.counts.clone();
+            this.hasNext = true;
+        }
+
+        // Répartit n entre les éléments d'index from et suivants, en en plaçant le moins possible
+        // sur les premiers d'entre eux.
+        private void fillMinimally(int from, int n) {
+            for (var i = from; i < counts.length; i++) {
+                counts[i] = Math.max(0, n - suffixSum[i + 1]);
+                n -= counts[i];
+            }
+        }
+
+        // Passe au vecteur suivant, en cherchant le dernier élément dont la multiplicité peut être
+        // augmentée, sachant que celles des éléments suivants doivent alors diminuer.
+        private void advance() {
+            var k = counts.length;
+            var i = k - 2;
+            var rest = counts[k - 1];
+            while (i >= 0 && (counts[i] == max[i] || rest == 0)) {
+                rest += counts[i];
+                i -= 1;
+            }
+            if (i < 0) {
+                hasNext = false;
+            } else {
+                counts[i] += 1;
+                fillMinimally(i + 1, rest - 1);
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super SortedBag<E>> action) {
+            if (!hasNext)
+                return false;
+
+            var subset = new TreeMap<E, Integer>();
+            for (var i = 0; i < counts.length; i++)
+                if (counts[i] > 0) subset.put(keys.get(i), counts[i]);
+            advance();
+            action.accept(new SortedBag<>(subset));
+            return true;
+        }
+
+        @Override
+        public Spliterator<SortedBag<E>> trySplit() {
+            var size = 0;
+            for (var c : counts) size += c;
+            var firstCount = counts[0];
+            var lastFirstCount = Math.min(max[0], size);
+            if (!hasNext || lastFirstCount <= firstCount)
+                return null;
+
+            // Le préfixe retourné couvre les valeurs de x0 jusqu'à mid (inclus), this le reste.
+            var mid = (firstCount + lastFirstCount) >>> 1;
+            var prefix = new SubsetSpliterator<>(this, mid);
+            counts[0] = mid + 1;
+            fillMinimally(1, size - mid - 1);
+            return prefix;
+        }
+
+        private static long saturatedAdd(long a, long b) {
+            var sum = a + b;
+            return (sum < 0) ? Long.MAX_VALUE : sum;
+        }
+
+        // Compte le vecteur courant et, pour chaque index i, les vecteurs qui coïncident avec lui
+        // jusqu'à i (exclu) et dont la multiplicité d'index i est plus grande.
+        @Override
+        public long estimateSize() {
+            if (!hasNext)
+                return 0;
+
+            var rest = 0;
+            for (var c : counts) rest += c;
+
+            var count = 1L;
+            for (var i = 0; i < counts.length; i++) {
+                for (var x = counts[i] + 1; x <= Math.min(max[i], rest); x++)
+                    count = saturatedAdd(count, ways[i + 1][rest - x]);
+                rest -= counts[i];
+            }
+            return count;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL | IMMUTABLE | (sized ? SIZED | SUBSIZED : 0);
+        }
+    }
+
     /**
      * Bâtisseur de multiensemble.
+     * Il peut également servir de version modifiable (transitoire) d'un multiensemble : on y applique
+     * une série d'ajouts et de retraits, puis <code>build</code> fige le résultat en une seule copie.
      * @param <E> le type des éléments du multiensemble à bâtir.
      */
     public static final class Builder<E extends Comparable<E>> {
         private final SortedMap<E, Integer> elements = new TreeMap<>();
+        private int size = 0;
 
         /**
          * Ajoute un nombre donné d'occurrences d'un élément au bâtisseur.
@@ -287,6 +553,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
         public Builder<E> add(int count, E element) {
             Preconditions.checkArgument(0 <= count);
             if (count > 0) elements.merge(element, count, Integer::sum);
+            size += count;
             return this;
         }
 
@@ -306,6 +573,68 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
          */
         public Builder<E> add(SortedBag<E> that) {
             that.elements.forEach((e, c) -> elements.merge(e, c, Integer::sum));
+            size += that.size();
+            return this;
+        }
+
+        /**
+         * Ajoute tous les éléments des multiensembles donnés au bâtisseur.
+         * @param those les multiensembles dont les éléments sont à ajouter
+         * @return le bâtisseur (<code>this</code>)
+         */
+        @SafeVarargs
+        public final Builder<E> unionAll(SortedBag<E>... those) {
+            for (var that : those)
+                add(that);
+            return this;
+        }
+
+        /**
+         * Retire au plus un nombre donné d'occurrences d'un élément du bâtisseur.
+         * @param count le nombre d'occurrences de l'élément à retirer
+         * @param element l'élément à retirer
+         * @return le bâtisseur (<code>this</code>)
+         * @throws IllegalArgumentException si <code>count</code> est négatif
+         */
+        public Builder<E> remove(int count, E element) {
+            Preconditions.checkArgument(0 <= count);
+            var n = elements.getOrDefault(element, 0);
+            if (n > count)
+                elements.put(element, n - count);
+            else
+                elements.remove(element);
+            size -= Math.min(n, count);
+            return this;
+        }
+
+        /**
+         * Retire (au plus) une occurrence de l'élément du bâtisseur.
+         * @param e l'élément à retirer
+         * @return le bâtisseur (<code>this</code>)
+         */
+        public Builder<E> remove(E e) {
+            return remove(1, e);
+        }
+
+        /**
+         * Retire (au plus) tous les éléments du multiensemble donné du bâtisseur.
+         * @param that le multiensemble dont les éléments sont à retirer
+         * @return le bâtisseur (<code>this</code>)
+         */
+        public Builder<E> remove(SortedBag<E> that) {
+            that.elements.forEach((e, c) -> remove(c, e));
+            return this;
+        }
+
+        /**
+         * Retire (au plus) tous les éléments des multiensembles donnés du bâtisseur.
+         * @param those les multiensembles dont les éléments sont à retirer
+         * @return le bâtisseur (<code>this</code>)
+         */
+        @SafeVarargs
+        public final Builder<E> differenceAll(SortedBag<E>... those) {
+            for (var that : those)
+                remove(that);
             return this;
         }
 
@@ -322,9 +651,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
          * @return le nombre d'éléments ajoutés au bâtisseur jusqu'à présent
          */
         public int size() {
-            return elements.values().stream()
-                    .mapToInt(Integer::intValue)
-                    .sum();
+            return size;
         }
 
         /**
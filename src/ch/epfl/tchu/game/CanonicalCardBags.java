@@ -0,0 +1,133 @@
+package ch.epfl.tchu.game;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import ch.epfl.tchu.SortedBag;
+
+/**
+ * Fabrique canonique de petits multiensembles de cartes : deux multiensembles égaux d'au plus MAX_SIZE cartes
+ * obtenus au moyen de cette classe sont une seule et même instance, partagée par tous les états de toutes les parties.
+ * Les multiensembles sont identifiés par leur version empaquetée (voir PackedCardBag).
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+public final class CanonicalCardBags {
+
+    /**
+     * Taille maximale des multiensembles partagés, à savoir la taille maximale des cartes posées pour s'emparer d'un tunnel.
+     * Le nombre de multiensembles différents de cette taille au plus étant fini (48620), le cache est naturellement borné.
+     */
+    public static final int MAX_SIZE = Constants.MAX_ROUTE_LENGTH + Constants.ADDITIONAL_TUNNEL_CARDS;
+
+    private static final ConcurrentMap<Long, SortedBag<Card>> CACHE = new ConcurrentHashMap<Long, SortedBag<Card>>();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    /**
+     * Empêche l'instanciation de la classe.
+     */
+    private CanonicalCardBags() {}
+
+    /**
+     * Retourne l'instance canonique du multiensemble empaqueté donné s'il contient au plus MAX_SIZE cartes,
+     * et un nouveau multiensemble sinon.
+     *
+     * @param packedCards
+     *          multiensemble empaqueté.
+     * @return un multiensemble trié contenant les mêmes cartes que le multiensemble empaqueté donné.
+     */
+    public static SortedBag<Card> of(long packedCards) {
+
+        if (PackedCardBag.size(packedCards) > MAX_SIZE)
+            return PackedCardBag.unpack(packedCards);
+
+        SortedBag<Card> canonical = CACHE.get(packedCards);
+        if (canonical != null) {
+            HITS.increment();
+            return canonical;
+        }
+
+        MISSES.increment();
+        canonical = PackedCardBag.unpack(packedCards);
+        SortedBag<Card> previous = CACHE.putIfAbsent(packedCards, canonical);
+
+        return (previous != null) ? previous : canonical;
+    }
+
+    /**
+     * Retourne l'instance canonique du multiensemble ne contenant que la carte donnée.
+     *
+     * @param card
+     *          l'unique carte du multiensemble.
+     * @return l'instance canonique du multiensemble ne contenant que la carte donnée.
+     */
+    public static SortedBag<Card> of(Card card) {
+        return of(PackedCardBag.of(card));
+    }
+
+    /**
+     * Retourne l'instance canonique égale au multiensemble donné s'il contient au plus MAX_SIZE cartes,
+     * et le multiensemble lui-même sinon. Dans le premier cas, le multiensemble donné devient l'instance canonique
+     * s'il n'en existait pas encore.
+     *
+     * @param cards
+     *          multiensemble de cartes.
+     * @return un multiensemble égal à celui donné, canonique s'il est assez petit.
+     */
+    public static SortedBag<Card> intern(SortedBag<Card> cards) {
+
+        if (cards.size() > MAX_SIZE)
+            return cards;
+
+        SortedBag<Card> previous = CACHE.putIfAbsent(PackedCardBag.pack(cards), cards);
+        if (previous != null) {
+            HITS.increment();
+            return previous;
+        }
+
+        MISSES.increment();
+        return cards;
+    }
+
+    /**
+     * Retourne le nombre de demandes auxquelles une instance canonique existante a été retournée.
+     *
+     * @return le nombre de succès du cache.
+     */
+    public static long hitCount() {
+        return HITS.sum();
+    }
+
+    /**
+     * Retourne le nombre de demandes ayant nécessité la création d'une nouvelle instance canonique.
+     *
+     * @return le nombre d'échecs du cache.
+     */
+    public static long missCount() {
+        return MISSES.sum();
+    }
+
+    /**
+     * Retourne la proportion (entre 0 et 1) des demandes auxquelles une instance canonique existante a été retournée.
+     *
+     * @return le taux de succès du cache, 0 si aucune demande n'a encore été faite.
+     */
+    public static double hitRate() {
+
+        long hits = hitCount();
+        long total = hits + missCount();
+
+        return (total == 0) ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Retourne le nombre d'instances canoniques actuellement partagées.
+     *
+     * @return le nombre d'instances canoniques actuellement partagées.
+     */
+    public static int size() {
+        return CACHE.size();
+    }
+}
@@ -0,0 +1,627 @@
+package ch.epfl.tchu.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.SortedBag;
+
+/**
+ * Multiensemble trié et immuable de cartes wagon/locomotive, offrant le même contrat public que SortedBag,
+ * mais représenté par un vecteur de Card.COUNT multiplicités indexé par l'ordinal des cartes.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+public final class CardBag implements Iterable<Card> {
+
+    private static final CardBag EMPTY = new CardBag(new int[Card.COUNT]);
+
+    // Multiplicité de chaque type de carte, indexée par son ordinal.
+    // Attention : le tableau n'est jamais copié ni modifié après construction !
+    private final int[] counts;
+    private final int size;
+
+    private CardBag(int[] counts) {
+
+        int sum = 0;
+        for (int count : counts) {
+            assert count >= 0;
+            sum += count;
+        }
+
+        this.counts = counts;
+        this.size = sum;
+    }
+
+    /**
+     * Retourne le multiensemble vide.
+     *
+     * @return le multiensemble vide.
+     */
+    public static CardBag of() {
+        return EMPTY;
+    }
+
+    /**
+     * Retourne un multiensemble contenant une seule carte.
+     *
+     * @param card
+     *          l'unique carte du multiensemble.
+     * @return un multiensemble ne contenant que la carte donnée.
+     */
+    public static CardBag of(Card card) {
+        return of(1, card);
+    }
+
+    /**
+     * Retourne un multiensemble contenant une carte avec une multiplicité donnée.
+     *
+     * @param n
+     *          multiplicité de la carte.
+     * @param card
+     *          carte du multiensemble.
+     * @return un multiensemble contenant n occurrences de la carte donnée.
+     * @exception IllegalArgumentException
+     *          si n est strictement négatif (< 0).
+     */
+    public static CardBag of(int n, Card card) {
+        return of(n, card, 0, card);
+    }
+
+    /**
+     * Retourne un multiensemble contenant deux cartes, chacune avec une multiplicité donnée.
+     *
+     * @param n1
+     *          multiplicité de la première carte.
+     * @param card1
+     *          première carte.
+     * @param n2
+     *          multiplicité de la seconde carte.
+     * @param card2
+     *          seconde carte.
+     * @return un multiensemble contenant n1 occurrences de card1 et n2 occurrences de card2.
+     * @exception IllegalArgumentException
+     *          si n1 ou n2 est strictement négatif (< 0).
+     */
+    public static CardBag of(int n1, Card card1, int n2, Card card2) {
+
+        Preconditions.checkArgument(n1 >= 0 && n2 >= 0);
+
+        if (n1 + n2 == 0)
+            return EMPTY;
+
+        int[] counts = new int[Card.COUNT];
+        counts[card1.ordinal()] += n1;
+        counts[card2.ordinal()] += n2;
+
+        return new CardBag(counts);
+    }
+
+    /**
+     * Retourne un multiensemble contenant les cartes d'un itérable (p.ex. une liste).
+     *
+     * @param cards
+     *          itérable fournissant les cartes du multiensemble.
+     * @return un multiensemble contenant exactement les mêmes cartes que l'itérable donné.
+     */
+    public static CardBag of(Iterable<Card> cards) {
+
+        if (cards instanceof CardBag)
+            return (CardBag) cards;
+        if (cards instanceof SortedBag<?>)
+            return of((SortedBag<Card>) cards);
+
+        int[] counts = new int[Card.COUNT];
+        for (Card card : cards)
+            counts[card.ordinal()] += 1;
+
+        return new CardBag(counts);
+    }
+
+    /**
+     * Retourne un multiensemble contenant les mêmes cartes que le SortedBag donné.
+     *
+     * @param cards
+     *          multiensemble trié de cartes.
+     * @return un multiensemble contenant exactement les mêmes cartes que celui donné.
+     */
+    public static CardBag of(SortedBag<Card> cards) {
+
+        if (cards.isEmpty())
+            return EMPTY;
+
+        int[] counts = new int[Card.COUNT];
+        cards.toMap().forEach((card, n) -> counts[card.ordinal()] = n);
+
+        return new CardBag(counts);
+    }
+
+    /**
+     * Retourne vrai ssi le multiensemble est vide.
+     *
+     * @return vrai ssi le multiensemble est vide.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Retourne le nombre de cartes du multiensemble.
+     *
+     * @return le nombre de cartes du multiensemble.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retourne la multiplicité de la carte donnée.
+     *
+     * @param card
+     *          carte dont la multiplicité doit être retournée.
+     * @return la multiplicité de la carte donnée, 0 si elle n'appartient pas au multiensemble.
+     */
+    public int countOf(Card card) {
+        return counts[card.ordinal()];
+    }
+
+    /**
+     * Retourne vrai ssi la carte donnée appartient au multiensemble (au moins une fois).
+     *
+     * @param card
+     *          carte dont la présence doit être testée.
+     * @return vrai ssi la carte donnée appartient au multiensemble.
+     */
+    public boolean contains(Card card) {
+        return countOf(card) > 0;
+    }
+
+    /**
+     * Retourne vrai ssi le multiensemble donné est un sous-ensemble de celui-ci.
+     *
+     * @param that
+     *          multiensemble dont on doit déterminer s'il est un sous-ensemble.
+     * @return vrai ssi that est un sous-ensemble de this.
+     */
+    public boolean contains(CardBag that) {
+
+        if (that.size > size)
+            return false;
+
+        for (int i = 0; i < Card.COUNT; i++) {
+            if (that.counts[i] > counts[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Retourne la carte du multiensemble d'index donné.
+     *
+     * @param index
+     *          index de la carte à retourner.
+     * @return la carte d'index donné.
+     * @exception IndexOutOfBoundsException
+     *          si l'index est invalide.
+     */
+    public Card get(int index) {
+
+        Objects.checkIndex(index, size);
+
+        for (int i = 0; i < Card.COUNT; i++) {
+            if (index < counts[i])
+                return Card.ALL.get(i);
+            index -= counts[i];
+        }
+
+        throw new Error(); // Ne devrait jamais se produire.
+    }
+
+    /**
+     * Retourne l'union du multiensemble récepteur et du multiensemble donné.
+     *
+     * @param that
+     *          multiensemble à combiner avec le récepteur.
+     * @return l'union de this et de that.
+     */
+    public CardBag union(CardBag that) {
+
+        if (that.isEmpty())
+            return this;
+        if (isEmpty())
+            return that;
+
+        int[] newCounts = new int[Card.COUNT];
+        for (int i = 0; i < Card.COUNT; i++)
+            newCounts[i] = counts[i] + that.counts[i];
+
+        return new CardBag(newCounts);
+    }
+
+    /**
+     * Retourne la différence entre le multiensemble récepteur et le multiensemble donné.
+     *
+     * @param that
+     *          multiensemble à retirer du récepteur.
+     * @return la différence entre this et that.
+     */
+    public CardBag difference(CardBag that) {
+
+        if (that.isEmpty() || isEmpty())
+            return this;
+
+        int[] newCounts = new int[Card.COUNT];
+        for (int i = 0; i < Card.COUNT; i++)
+            newCounts[i] = Math.max(0, counts[i] - that.counts[i]);
+
+        return new CardBag(newCounts);
+    }
+
+    /**
+     * Retourne l'union du multiensemble récepteur et de tous les multiensembles donnés, calculée en une seule passe.
+     *
+     * @param those
+     *          multiensembles à combiner avec le récepteur.
+     * @return l'union de this et de tous les multiensembles donnés.
+     */
+    public CardBag unionAll(CardBag... those) {
+        return new Builder().add(this).unionAll(those).build();
+    }
+
+    /**
+     * Retourne la différence entre le multiensemble récepteur et l'union de tous les multiensembles donnés,
+     * calculée en une seule passe.
+     *
+     * @param those
+     *          multiensembles à retirer du récepteur.
+     * @return la différence entre this et l'union des multiensembles donnés.
+     */
+    public CardBag differenceAll(CardBag... those) {
+        return new Builder().add(this).differenceAll(those).build();
+    }
+
+    /**
+     * Retourne tous les sous-ensembles du multiensemble ayant une taille donnée.
+     *
+     * @param size
+     *          taille des sous-ensembles à retourner.
+     * @return l'ensemble des sous-ensembles de this de taille size.
+     * @exception IllegalArgumentException
+     *          si size n'est pas comprise entre 0 et la taille du multiensemble.
+     */
+    public Set<CardBag> subsetsOfSize(int size) {
+
+        Preconditions.checkArgument(0 <= size && size <= this.size);
+
+        Set<CardBag> result = new HashSet<CardBag>();
+        addSubsets(result, new int[Card.COUNT], 0, size);
+
+        return Collections.unmodifiableSet(result);
+    }
+
+    // Chaque vecteur de multiplicités n'étant produit qu'une seule fois, aucun doublon n'est possible.
+    private void addSubsets(Set<CardBag> result, int[] subset, int ordinal, int remaining) {
+
+        if (remaining == 0) {
+            result.add(new CardBag(subset.clone()));
+            return;
+        }
+        if (ordinal == Card.COUNT)
+            return;
+
+        for (int n = Math.min(remaining, counts[ordinal]); n >= 0; n--) {
+            subset[ordinal] = n;
+            addSubsets(result, subset, ordinal + 1, remaining - n);
+        }
+        subset[ordinal] = 0;
+    }
+
+    /**
+     * Retourne une liste contenant les cartes du multiensemble, dans l'ordre.
+     *
+     * @return une liste contenant les cartes de this.
+     */
+    public List<Card> toList() {
+
+        List<Card> list = new ArrayList<Card>(size);
+        for (int i = 0; i < Card.COUNT; i++)
+            list.addAll(Collections.nCopies(counts[i], Card.ALL.get(i)));
+
+        return list;
+    }
+
+    /**
+     * Retourne un flot des cartes du multiensemble, dans l'ordre.
+     *
+     * @return un flot des cartes de this.
+     */
+    public Stream<Card> stream() {
+        return StreamSupport.stream(Spliterators.spliterator(iterator(), size, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Retourne un itérateur sur les cartes du multiensemble, dans l'ordre.
+     *
+     * @return un itérateur sur les cartes de this.
+     */
+    @Override
+    public Iterator<Card> iterator() {
+
+        return new Iterator<Card>() {
+            private int ordinal = 0;
+            private int used = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (ordinal < Card.COUNT && used == counts[ordinal]) {
+                    ordinal += 1;
+                    used = 0;
+                }
+                return ordinal < Card.COUNT;
+            }
+
+            @Override
+            public Card next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                used += 1;
+                return Card.ALL.get(ordinal);
+            }
+        };
+    }
+
+    /**
+     * Retourne une table (immuable) associant sa multiplicité à chaque carte du multiensemble.
+     *
+     * @return une table associant sa multiplicité à chaque carte de this.
+     */
+    public Map<Card, Integer> toMap() {
+
+        Map<Card, Integer> map = new EnumMap<Card, Integer>(Card.class);
+        for (int i = 0; i < Card.COUNT; i++) {
+            if (counts[i] > 0)
+                map.put(Card.ALL.get(i), counts[i]);
+        }
+
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Retourne l'ensemble des cartes du multiensemble.
+     * Attention : les cartes apparaissant plus d'une fois dans le multiensemble n'apparaissent qu'une seule fois dans l'ensemble retourné !
+     *
+     * @return l'ensemble des cartes du multiensemble.
+     */
+    public Set<Card> toSet() {
+
+        Set<Card> set = EnumSet.noneOf(Card.class);
+        for (int i = 0; i < Card.COUNT; i++) {
+            if (counts[i] > 0)
+                set.add(Card.ALL.get(i));
+        }
+
+        return Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * Retourne un SortedBag contenant les mêmes cartes que ce multiensemble, partagé s'il est petit (voir CanonicalCardBags).
+     *
+     * @return un SortedBag contenant les mêmes cartes que this.
+     */
+    public SortedBag<Card> toSortedBag() {
+
+        if (size <= CanonicalCardBags.MAX_SIZE)
+            return CanonicalCardBags.of(PackedCardBag.pack(this));
+
+        SortedBag.Builder<Card> builder = new SortedBag.Builder<Card>();
+        for (int i = 0; i < Card.COUNT; i++)
+            builder.add(counts[i], Card.ALL.get(i));
+
+        return builder.build();
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(counts);
+    }
+
+    @Override
+    public boolean equals(Object that) {
+        return (that instanceof CardBag)
+                && Arrays.equals(counts, ((CardBag) that).counts);
+    }
+
+    @Override
+    public String toString() {
+
+        StringJoiner j = new StringJoiner(", ", "{", "}");
+        for (int i = 0; i < Card.COUNT; i++) {
+            if (counts[i] > 0)
+                j.add((counts[i] > 1 ? counts[i] + "×" : "") + Card.ALL.get(i));
+        }
+
+        return j.toString();
+    }
+
+    /**
+     * Représente un bâtisseur de multiensemble de cartes.
+     * Il peut également servir de version modifiable (transitoire) d'un multiensemble : on y applique
+     * une série d'ajouts et de retraits, puis build fige le résultat en une seule copie.
+     *
+     * @author Ilias Marwane Merigh (330316)
+     */
+    public static final class Builder {
+
+        private final int[] counts = new int[Card.COUNT];
+        private int size = 0;
+
+        /**
+         * Ajoute un nombre donné d'occurrences d'une carte au bâtisseur, et retourne le bâtisseur (this).
+         *
+         * @param count
+         *          nombre d'occurrences de la carte à ajouter.
+         * @param card
+         *          carte à ajouter.
+         * @return le bâtisseur (this).
+         * @exception IllegalArgumentException
+         *          si count est strictement négatif (< 0).
+         */
+        public Builder add(int count, Card card) {
+
+            Preconditions.checkArgument(count >= 0);
+
+            counts[card.ordinal()] += count;
+            size += count;
+
+            return this;
+        }
+
+        /**
+         * Ajoute une occurrence de la carte au bâtisseur, et retourne le bâtisseur (this).
+         *
+         * @param card
+         *          carte à ajouter.
+         * @return le bâtisseur (this).
+         */
+        public Builder add(Card card) {
+            return add(1, card);
+        }
+
+        /**
+         * Ajoute toutes les cartes du multiensemble donné au bâtisseur, et retourne le bâtisseur (this).
+         *
+         * @param that
+         *          multiensemble dont les cartes sont à ajouter.
+         * @return le bâtisseur (this).
+         */
+        public Builder add(CardBag that) {
+
+            for (int i = 0; i < Card.COUNT; i++)
+                counts[i] += that.counts[i];
+            size += that.size;
+
+            return this;
+        }
+
+        /**
+         * Ajoute toutes les cartes des multiensembles donnés au bâtisseur, et retourne le bâtisseur (this).
+         *
+         * @param those
+         *          multiensembles dont les cartes sont à ajouter.
+         * @return le bâtisseur (this).
+         */
+        public Builder unionAll(CardBag... those) {
+
+            for (CardBag that : those)
+                add(that);
+
+            return this;
+        }
+
+        /**
+         * Retire au plus un nombre donné d'occurrences d'une carte du bâtisseur, et retourne le bâtisseur (this).
+         *
+         * @param count
+         *          nombre d'occurrences de la carte à retirer.
+         * @param card
+         *          carte à retirer.
+         * @return le bâtisseur (this).
+         * @exception IllegalArgumentException
+         *          si count est strictement négatif (< 0).
+         */
+        public Builder remove(int count, Card card) {
+
+            Preconditions.checkArgument(count >= 0);
+
+            int removed = Math.min(count, counts[card.ordinal()]);
+            counts[card.ordinal()] -= removed;
+            size -= removed;
+
+            return this;
+        }
+
+        /**
+         * Retire (au plus) une occurrence de la carte du bâtisseur, et retourne le bâtisseur (this).
+         *
+         * @param card
+         *          carte à retirer.
+         * @return le bâtisseur (this).
+         */
+        public Builder remove(Card card) {
+            return remove(1, card);
+        }
+
+        /**
+         * Retire (au plus) toutes les cartes du multiensemble donné du bâtisseur, et retourne le bâtisseur (this).
+         *
+         * @param that
+         *          multiensemble dont les cartes sont à retirer.
+         * @return le bâtisseur (this).
+         */
+        public Builder remove(CardBag that) {
+
+            for (Card card : Card.ALL)
+                remove(that.countOf(card), card);
+
+            return this;
+        }
+
+        /**
+         * Retire (au plus) toutes les cartes des multiensembles donnés du bâtisseur, et retourne le bâtisseur (this).
+         *
+         * @param those
+         *          multiensembles dont les cartes sont à retirer.
+         * @return le bâtisseur (this).
+         */
+        public Builder differenceAll(CardBag... those) {
+
+            for (CardBag that : those)
+                remove(that);
+
+            return this;
+        }
+
+        /**
+         * Retourne vrai ssi le bâtisseur est actuellement vide.
+         *
+         * @return vrai ssi le bâtisseur est actuellement vide.
+         */
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Retourne le nombre de cartes ajoutées au bâtisseur jusqu'à présent.
+         *
+         * @return le nombre de cartes ajoutées au bâtisseur jusqu'à présent.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Retourne un multiensemble contenant les cartes ajoutées jusqu'à présent au bâtisseur.
+         *
+         * @return un multiensemble contenant les cartes ajoutées à this.
+         */
+        public CardBag build() {
+            return isEmpty() ? EMPTY : new CardBag(counts.clone());
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package ch.epfl.tchu.game;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.SortedBag;
+
+/**
+ * Représente un tas de cartes wagon/locomotive, équivalent à un Deck<Card> mais dont les cartes sont stockées
+ * sous la forme de leur ordinal, dans un tableau d'octets partagé par tous les tas qui en sont issus.
+ * 
+ * @author Ilias Marwane Merigh (330316)
+ */
+final class CardDeck {
+
+    private static final CardDeck EMPTY = new CardDeck(new ShuffledOrdinals(new byte[0], null), 0);
+    
+    // Le sommet du tas se trouve à l'index start, les cartes précédentes en ayant déjà été retirées.
+    private final ShuffledOrdinals cards;
+    private final int start;
+    
+    private CardDeck(ShuffledOrdinals cards, int start) {
+        this.cards = cards;
+        this.start = start;
+    }
+    
+    /**
+     * Retourne un tas contenant les cartes du multiensemble donné, mélangées (paresseusement) au moyen du générateur donné.
+     * Pour un même état du générateur, l'ordre obtenu est le même que celui de Deck.of.
+     * 
+     * @param cards
+     *          ensemble de cartes à mélanger.
+     * @param rng
+     *          générateur de nombres aléatoires.
+     * @return le tas de cartes mélangé aléatoirement.
+     */
+    static CardDeck of(SortedBag<Card> cards, Random rng) {
+        return of(cards, (cards.size() <= 1) ? null : new SplittableRandom(rng.nextLong()));
+    }
+    
+    /**
+     * Retourne un tas contenant les cartes du multiensemble donné, mélangées (paresseusement) au moyen d'un générateur
+     * obtenu en scindant le générateur donné. Pour un même état du générateur, l'ordre obtenu est le même que celui de Deck.of.
+     * 
+     * @param cards
+     *          ensemble de cartes à mélanger.
+     * @param rng
+     *          générateur de nombres aléatoires scindable.
+     * @return le tas de cartes mélangé aléatoirement.
+     */
+    static CardDeck of(SortedBag<Card> cards, SplittableRandom rng) {
+        
+        if (cards.isEmpty())
+            return EMPTY;
+        
+        byte[] ordinals = new byte[cards.size()];
+        int i = 0;
+        for (Card card : cards)
+            ordinals[i++] = (byte) card.ordinal();
+        
+        return new CardDeck(new ShuffledOrdinals(ordinals, rng), 0);
+    }
+    
+    /**
+     * Retourne un tas contenant les cartes du multiensemble donné, mélangées (paresseusement) au moyen d'un générateur
+     * obtenu en scindant le générateur donné. Le tas est construit directement à partir des multiplicités des cartes,
+     * dans l'ordre de leurs ordinaux, de sorte que le résultat est le même que pour of(cards.toSortedBag(), rng).
+     * 
+     * @param cards
+     *          multiensemble de cartes à mélanger.
+     * @param rng
+     *          générateur de nombres aléatoires scindable.
+     * @return le tas de cartes mélangé aléatoirement.
+     */
+    static CardDeck of(CardBag cards, SplittableRandom rng) {
+        
+        if (cards.isEmpty())
+            return EMPTY;
+        
+        byte[] ordinals = new byte[cards.size()];
+        int i = 0;
+        for (Card card : Card.ALL) {
+            int end = i + cards.countOf(card);
+            Arrays.fill(ordinals, i, end, (byte) card.ordinal());
+            i = end;
+        }
+        
+        return new CardDeck(new ShuffledOrdinals(ordinals, rng), 0);
+    }
+    
+    /**
+     * Retourne un tas contenant les mêmes cartes que le tas donné, dans le même ordre. Les cartes du tas donné ne sont
+     * converties en ordinaux qu'au fur et à mesure qu'elles sont consultées, de sorte que son mélange reste paresseux.
+     * 
+     * @param deck
+     *          tas de cartes.
+     * @return un tas contenant les mêmes cartes que le tas donné, dans le même ordre.
+     */
+    static CardDeck of(Deck<Card> deck) {
+        return deck.isEmpty() ? EMPTY : new CardDeck(new ShuffledOrdinals(deck), 0);
+    }
+    
+    /**
+     * Retourne un tas contenant les cartes dont les ordinaux sont donnés, dans l'ordre donné (la première étant au sommet).
+     * 
+     * @param ordinals
+     *          ordinaux des cartes du tas, du sommet vers le fond (le tableau n'est pas copié).
+     * @return le tas contenant les cartes données, dans l'ordre donné.
+     */
+    static CardDeck ofOrdinals(byte[] ordinals) {
+        return (ordinals.length == 0) ? EMPTY : new CardDeck(new ShuffledOrdinals(ordinals, null), 0);
+    }
+    
+    /**
+     * Retourne la taille du tas, c-à-d le nombre de cartes qu'il contient.
+     * 
+     * @return la taille du tas.
+     */
+    int size() {
+        return cards.size() - start;
+    }
+    
+    /**
+     * Retourne vrai ssi le tas est vide.
+     * 
+     * @return vrai ssi le tas est vide.
+     */
+    boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    /**
+     * Retourne la carte au sommet du tas.
+     * 
+     * @return la carte au sommet du tas.
+     * @exception IllegalArgumentException
+     *          si le tas est vide.
+     */
+    Card topCard() {
+        
+        Preconditions.checkArgument(!isEmpty());
+        
+        cards.placeUpTo(start + 1);
+        
+        return Card.ALL.get(cards.get(start));
+    }
+    
+    /**
+     * Retourne la carte d'index donné, l'index 0 correspondant au sommet du tas.
+     * 
+     * @param index
+     *          index de la carte, depuis le sommet du tas.
+     * @return la carte d'index donné.
+     * @exception IndexOutOfBoundsException
+     *          si l'index n'est pas compris entre 0 (inclus) et la taille du tas (exclue).
+     */
+    Card get(int index) {
+        
+        Objects.checkIndex(index, size());
+        
+        cards.placeUpTo(start + index + 1);
+        
+        return Card.ALL.get(cards.get(start + index));
+    }
+    
+    /**
+     * Retourne un multiensemble contenant les count cartes se trouvant au sommet du tas.
+     * 
+     * @param count
+     *          nombre de cartes à retourner.
+     * @return un multiensemble contenant les count cartes se trouvant au sommet du tas.
+     * @exception IllegalArgumentException
+     *          si count n'est pas compris entre 0 (inclus) et la taille du tas (incluse).
+     */
+    SortedBag<Card> topCards(int count) {
+        
+        Preconditions.checkArgument(0 <= count && count <= size());
+        
+        cards.placeUpTo(start + count);
+        
+        if (count > CanonicalCardBags.MAX_SIZE) {
+            SortedBag.Builder<Card> builder = new SortedBag.Builder<Card>();
+            for (int i = start; i < start + count; i++)
+                builder.add(Card.ALL.get(cards.get(i)));
+            return builder.build();
+        }
+        
+        long packedCards = PackedCardBag.EMPTY;
+        for (int i = start; i < start + count; i++)
+            packedCards += PackedCardBag.of(Card.ALL.get(cards.get(i)));
+        
+        return CanonicalCardBags.of(packedCards);
+    }
+    
+    /**
+     * Retourne un tas identique au récepteur (this) mais sans la carte au sommet.
+     * 
+     * @return un tas identique au récepteur (this) mais sans la carte au sommet.
+     * @exception IllegalArgumentException
+     *          si le tas est vide.
+     */
+    CardDeck withoutTopCard() {
+        return withoutTopCards(1);
+    }
+    
+    /**
+     * Retourne un tas identique au récepteur (this) mais sans les count cartes du sommet.
+     * 
+     * @param count
+     *          nombre de cartes du sommet à retirer.
+     * @return un tas identique au récepteur (this) mais sans les count cartes du sommet.
+     * @exception IllegalArgumentException
+     *          si count n'est pas compris entre 0 (inclus) et la taille du tas (incluse).
+     */
+    CardDeck withoutTopCards(int count) {
+        
+        Preconditions.checkArgument(0 <= count && count <= size());
+        
+        return (count == 0) ? this : new CardDeck(cards, start + count);
+    }
+    
+    /**
+     * Représente les ordinaux des cartes d'un tas, mélangés paresseusement exactement comme les cartes d'un Deck
+     * (voir LazyShuffle), ou lus paresseusement dans un Deck.
+     * 
+     * @author Ilias Marwane Merigh (330316)
+     */
+    private static final class ShuffledOrdinals extends LazyShuffle {
+        
+        private final byte[] cards;
+        // Tas dont les cartes sont converties à la demande, les convertedCount premières l'ayant déjà été, ou null.
+        private final Deck<Card> source;
+        private int convertedCount;
+        
+        /**
+         * Construit les cartes mélangées paresseusement à partir des ordinaux donnés, au moyen d'un générateur
+         * qui leur est propre, obtenu en scindant le générateur donné. Si ce dernier est nul, les cartes ne sont pas mélangées.
+         * 
+         * @param cards
+         *          ordinaux des cartes à mélanger (le tableau n'est pas copié).
+         * @param rng
+         *          générateur de nombres aléatoires scindable, ou null.
+         */
+        ShuffledOrdinals(byte[] cards, SplittableRandom rng) {
+            super(cards.length, rng);
+            this.cards = cards;
+            this.source = null;
+        }
+        
+        /**
+         * Construit les ordinaux des cartes du tas donné, dans le même ordre. Ils sont lus dans le tas au moyen
+         * de placeUpTo, ce qui ne mélange ce dernier que jusqu'à la dernière carte lue.
+         * 
+         * @param source
+         *          tas dont les cartes doivent être converties.
+         */
+        ShuffledOrdinals(Deck<Card> source) {
+            super(source.size(), null);
+            this.cards = new byte[source.size()];
+            this.source = source;
+        }
+        
+        /**
+         * Place définitivement les count premières cartes, si ce n'est pas déjà fait, soit en les mélangeant
+         * (voir LazyShuffle.shuffleUpTo), soit en les lisant dans le tas dont elles proviennent.
+         * 
+         * @param count
+         *          nombre de cartes à placer.
+         */
+        void placeUpTo(int count) {
+            
+            if (source == null)
+                shuffleUpTo(count);
+            else
+                convertUpTo(count);
+        }
+        
+        private synchronized void convertUpTo(int count) {
+            
+            for (; convertedCount < count; convertedCount++)
+                cards[convertedCount] = (byte) source.get(convertedCount).ordinal();
+        }
+        
+        @Override
+        void swap(int i, int j) {
+            byte card = cards[j];
+            cards[j] = cards[i];
+            cards[i] = card;
+        }
+        
+        /**
+         * Retourne l'ordinal de la carte d'index donné, qui doit avoir été placée au moyen de placeUpTo.
+         * 
+         * @param index
+         *          index de la carte.
+         * @return l'ordinal de la carte d'index donné.
+         */
+        int get(int index) {
+            
+            assert isPlaced(index) && (source == null || index < convertedCount);
+            return cards[index];
+        }
+    }
+}
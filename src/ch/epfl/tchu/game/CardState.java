@@ -1,8 +1,7 @@
 package ch.epfl.tchu.game;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
+import java.util.SplittableRandom;
 
 import ch.epfl.tchu.Preconditions;
 import ch.epfl.tchu.SortedBag;
@@ -14,10 +13,11 @@ import ch.epfl.tchu.SortedBag;
  */
 public final class CardState extends PublicCardState {
     
-    private final Deck<Card> deck;
-    private final SortedBag<Card> discardedCards;
+    private final CardDeck deck;
+    // Défausse, sous la forme des multiplicités de chaque carte, partagée par tous les états tant qu'elle ne change pas.
+    private final CardBag discardedCards;
     
-    private CardState(List<Card> faceUpCards, Deck<Card> deck, SortedBag<Card> discardedCards) {
+    private CardState(int faceUpCards, CardDeck deck, CardBag discardedCards) {
 		super(faceUpCards, deck.size(), discardedCards.size());
 		this.deck = deck;
 		this.discardedCards = discardedCards;
@@ -40,7 +40,41 @@ public final class CardState extends PublicCardState {
 
     	Preconditions.checkArgument(deck.size() >= Constants.FACE_UP_CARDS_COUNT);    	
     	
-        return new CardState(deck.topCards(Constants.FACE_UP_CARDS_COUNT).toList(), deck.withoutTopCards(Constants.FACE_UP_CARDS_COUNT), SortedBag.of());
+        return of(CardDeck.of(deck));
+    }
+
+    /**
+     * Retourne un état dans lequel les 5 cartes disposées faces visibles sont les 5 premières du tas donné,
+     * la pioche est constituée des cartes du tas restantes, et la défausse est vide.
+     * Le tas est utilisé tel quel, sans être copié.
+     * 
+     * @param deck
+     *          tas donné.
+     * @return  un état dans lequel les 5 cartes disposées faces visibles sont les 5 premières du tas donné,
+     *          la pioche est constituée des cartes du tas restantes, et la défausse est vide.
+     * @exception IllegalArgumentException
+     *          si le tas donné contient moins de 5 cartes.
+     */
+    static CardState of(CardDeck deck) {
+
+    	Preconditions.checkArgument(deck.size() >= Constants.FACE_UP_CARDS_COUNT);    	
+    	
+        return new CardState(PackedFaceUpCards.pack(deck.topCards(Constants.FACE_UP_CARDS_COUNT).toList()), deck.withoutTopCards(Constants.FACE_UP_CARDS_COUNT), CardBag.of());
+    }
+
+    /**
+     * Retourne l'état dont les cartes face visible, la pioche et la défausse sont celles données.
+     * 
+     * @param faceUpCards
+     *          cartes face visible, empaquetées au moyen de PackedFaceUpCards.
+     * @param deck
+     *          pioche.
+     * @param discardedCards
+     *          défausse.
+     * @return l'état dont les cartes face visible, la pioche et la défausse sont celles données.
+     */
+    static CardState of(int faceUpCards, CardDeck deck, CardBag discardedCards) {
+        return new CardState(faceUpCards, deck, discardedCards);
     }
 
     /**
@@ -64,14 +98,30 @@ public final class CardState extends PublicCardState {
     	Preconditions.checkArgument(slot < Constants.FACE_UP_CARDS_COUNT);
     	Preconditions.checkArgument(!this.isDeckEmpty());
     	
-    	ArrayList<Card> newFaceUpCards = new ArrayList<Card>(this.faceUpCards());
-    	
-    	newFaceUpCards.set(slot, this.topDeckCard());
+    	int newFaceUpCards = PackedFaceUpCards.with(this.packedFaceUpCards(), slot, this.topDeckCard());
 
-    	return  new CardState(newFaceUpCards, deck.withoutTopCard(), SortedBag.of(discardedCards));
+    	return  new CardState(newFaceUpCards, deck.withoutTopCard(), discardedCards);
 
     }
    
+    /**
+     * Retourne la pioche.
+     * 
+     * @return la pioche.
+     */
+    CardDeck deck() {
+        return deck;
+    }
+    
+    /**
+     * Retourne la défausse.
+     * 
+     * @return la défausse.
+     */
+    CardBag discardedCards() {
+        return discardedCards;
+    }
+   
     /**
      * Retourne la carte se trouvant au sommet de la pioche.
      * 
@@ -80,7 +130,7 @@ public final class CardState extends PublicCardState {
      *          si la pioche est vide.
      */
     public Card topDeckCard() {
-        return (Card) deck.topCard();
+        return deck.topCard();
     }
    
     /**
@@ -91,7 +141,7 @@ public final class CardState extends PublicCardState {
      *          si la pioche est vide.
      */
     public CardState withoutTopDeckCard() {
-    	return  new CardState(this.faceUpCards(), deck.withoutTopCard(), SortedBag.of(discardedCards));    	
+    	return  new CardState(this.packedFaceUpCards(), deck.withoutTopCard(), discardedCards);
     }
     
     /**
@@ -108,7 +158,24 @@ public final class CardState extends PublicCardState {
     	
     	Preconditions.checkArgument(isDeckEmpty());
     	
-    	return  new CardState(this.faceUpCards(), Deck.of(discardedCards, rng), SortedBag.of());
+    	return  withDeckRecreatedFromDiscards(new SplittableRandom(rng.nextLong()));
+    }
+    
+    /**
+     * Retourne un ensemble de cartes identique au récepteur (this),
+     * si ce n'est que les cartes de la défausse ont été mélangées au moyen du générateur aléatoire scindable donné afin de constituer la nouvelle pioche.
+     * 
+     * @param rng
+     *          générateur de nombres aléatoires scindable.
+     * @return un ensemble de cartes identique au récepteur (this), où les cartes de la défausse ont été mélangées.
+     * @exception IllegalArgumentException
+     *          si la pioche du récepteur n'est pas vide.
+     */
+    public CardState withDeckRecreatedFromDiscards(SplittableRandom rng) {
+    	
+    	Preconditions.checkArgument(isDeckEmpty());
+    	
+    	return  new CardState(this.packedFaceUpCards(), CardDeck.of(discardedCards, rng), CardBag.of());
     }
     
     /**
@@ -119,6 +186,10 @@ public final class CardState extends PublicCardState {
      * @return un ensemble de cartes identique au récepteur (this), mais avec les cartes données ajoutées à la défausse.
      */
     public CardState withMoreDiscardedCards(SortedBag<Card> additionalDiscards) {
-    	return  new CardState(this.faceUpCards(), this.deck, this.discardedCards.union(additionalDiscards));
+    	
+    	if (additionalDiscards.isEmpty())
+    		return this;
+    	
+    	return  new CardState(this.packedFaceUpCards(), this.deck, this.discardedCards.union(CardBag.of(additionalDiscards)));
     }
 }
@@ -3,7 +3,10 @@ package ch.epfl.tchu.game;
 import ch.epfl.tchu.game.Route.Level;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public final class ChMap {
     private ChMap() { }
@@ -240,4 +243,86 @@ public final class ChMap {
         if (fr != 0) trips.addAll(Trip.all(from, FR, fr));
         return new Ticket(trips);
     }
+
+    // Index de chaque route dans ALL_ROUTES (les routes sont comparées par référence).
+    private static final Map<Route, Integer> ROUTE_INDICES = routeIndices();
+
+    private static Map<Route, Integer> routeIndices() {
+        var indices = new HashMap<Route, Integer>();
+        for (int i = 0; i < ALL_ROUTES.size(); i++)
+            indices.put(ALL_ROUTES.get(i), i);
+        return indices;
+    }
+
+    // Index de chaque exemplaire de chaque billet dans ALL_TICKETS (les billets sont comparés par référence) ;
+    // les billets pays à pays y figurent deux fois.
+    private static final Map<Ticket, int[]> TICKET_INDICES = ticketIndices();
+
+    private static Map<Ticket, int[]> ticketIndices() {
+        var indices = new HashMap<Ticket, int[]>();
+        for (int i = 0; i < ALL_TICKETS.size(); i++) {
+            int[] previous = indices.getOrDefault(ALL_TICKETS.get(i), new int[0]);
+            int[] current = Arrays.copyOf(previous, previous.length + 1);
+            current[previous.length] = i;
+            indices.put(ALL_TICKETS.get(i), current);
+        }
+        return indices;
+    }
+
+    // Index de la route double de chaque route, c-à-d de l'autre route reliant les mêmes gares, ou -1 s'il n'y en a pas.
+    private static final int[] SIBLING_INDICES = siblingIndices();
+
+    private static int[] siblingIndices() {
+        var siblings = new int[ALL_ROUTES.size()];
+        for (int i = 0; i < siblings.length; i++) {
+            siblings[i] = -1;
+            Route route = ALL_ROUTES.get(i);
+            for (int j = 0; j < siblings.length; j++) {
+                Route other = ALL_ROUTES.get(j);
+                if (j != i && other.stations().contains(route.station1()) && other.stations().contains(route.station2()))
+                    siblings[i] = j;
+            }
+        }
+        return siblings;
+    }
+
+    /**
+     * Retourne l'index de la route donnée dans la liste retournée par routes(), ou -1 si elle n'en fait pas partie.
+     *
+     * @param route
+     *          route dont l'index doit être retourné.
+     * @return l'index de la route donnée, ou -1 si elle ne fait pas partie de la carte.
+     */
+    static int routeIndex(Route route) {
+        return ROUTE_INDICES.getOrDefault(route, -1);
+    }
+
+    /**
+     * Retourne l'index, dans la liste retournée par tickets(), de l'exemplaire donné du billet donné, ou -1 si le billet
+     * n'en fait pas partie ou n'y figure pas autant de fois. Les billets pays à pays y figurant deux fois, chacun de leurs
+     * exemplaires a son propre index.
+     *
+     * @param ticket
+     *          billet dont l'index doit être retourné.
+     * @param occurrence
+     *          numéro de l'exemplaire du billet, à partir de 0.
+     * @return l'index de l'exemplaire donné du billet donné, ou -1 s'il ne fait pas partie de la carte.
+     */
+    static int ticketIndex(Ticket ticket, int occurrence) {
+
+        int[] indices = TICKET_INDICES.get(ticket);
+        return (indices == null || occurrence < 0 || occurrence >= indices.length) ? -1 : indices[occurrence];
+    }
+
+    /**
+     * Retourne l'index de la route double de la route d'index donné, c-à-d de l'autre route de la carte reliant les mêmes gares,
+     * ou -1 si la route d'index donné est simple.
+     *
+     * @param routeIndex
+     *          index de la route dans la liste retournée par routes().
+     * @return l'index de la route double de la route d'index donné, ou -1 s'il n'y en a pas.
+     */
+    static int siblingIndex(int routeIndex) {
+        return SIBLING_INDICES[routeIndex];
+    }
 }
@@ -1,8 +1,10 @@
 package ch.epfl.tchu.game;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.Random;
+import java.util.SplittableRandom;
 
 import ch.epfl.tchu.Preconditions;
 import ch.epfl.tchu.SortedBag;
@@ -16,17 +18,24 @@ import ch.epfl.tchu.SortedBag;
  */
 public final class Deck<C extends Comparable<C>> {
 
-    private final ArrayList<C> listCards;
+    // Cartes du tas, partagées par tous les tas qui en sont issus.
+    // Le sommet du tas se trouve à l'index start, les cartes précédentes en ayant déjà été retirées.
+    private final ShuffledCards cards;
+    private final int start;
     
     /**
      * Crée une instance de Deck qui pourra être retourné par la méthode of.
      */
-    private Deck(ArrayList<C> cards) {
-        listCards = cards;
+    private Deck(ShuffledCards cards, int start) {
+        this.cards = cards;
+        this.start = start;
     }
     
     /**
      * Retourne un tas de cartes ayant les mêmes cartes que le multiensemble cards, mélangées au moyen du générateur de nombres aléatoires rng.
+     * Le mélange est fait paresseusement, une position à la fois, au fur et à mesure que les cartes sont consultées ;
+     * il est toutefois équivalent à un mélange complet, et ne dépend que de l'état du générateur lors de l'appel.
+     * Le générateur est utilisé (une seule fois) pour en créer un nouveau, de type SplittableRandom, propre au tas.
      * 
      * @param <C>
      *          type de cartes.
@@ -37,21 +46,43 @@ public final class Deck<C extends Comparable<C>> {
      * @return le tas de cartes mélangé aléatoirement.
      */
     public static <C extends Comparable<C>> Deck<C> of(SortedBag<C> cards, Random rng) {
+        return of(cards, (cards == null || cards.size() <= 1) ? null : new SplittableRandom(rng.nextLong()));
+    }
+    
+    /**
+     * Retourne un tas de cartes ayant les mêmes cartes que le multiensemble cards, mélangées au moyen d'un générateur
+     * obtenu en scindant (split) le générateur rng. Le mélange est fait paresseusement, comme pour of(SortedBag, Random).
+     * 
+     * Contrairement à Random, SplittableRandom permet de dériver de manière déterministe des générateurs indépendants,
+     * ce qui rend reproductibles des parties simulées en parallèle (voir RandomStreams).
+     * 
+     * @param <C>
+     *          type de cartes.
+     * @param cards
+     *          ensemble de cartes à mélanger.
+     * @param rng
+     *          générateur de nombres aléatoires scindable.
+     * @return le tas de cartes mélangé aléatoirement.
+     */
+    public static <C extends Comparable<C>> Deck<C> of(SortedBag<C> cards, SplittableRandom rng) {
         
-    	ArrayList<C> list;
-    	
-    	if (cards == null || cards.isEmpty()) {
-    		list = new ArrayList<C> ();	
-    	}
-    	else
-    	{
-	        list = (ArrayList<C>) cards.toList();
-	        Collections.shuffle(list, rng);
-    	}
-    	
-        Deck<C> newDeck = new Deck<C>(list);
-                
-        return newDeck;
+    	if (cards == null || cards.isEmpty())
+    		return new Deck<C>(new ShuffledCards(new Object[0], rng), 0);
+
+        return new Deck<C>(new ShuffledCards(cards.toList().toArray(), rng), 0);
+    }
+    
+    /**
+     * Retourne un tas contenant les cartes données, dans l'ordre donné (la première étant au sommet), sans les mélanger.
+     * 
+     * @param <C>
+     *          type de cartes.
+     * @param cards
+     *          cartes du tas, du sommet vers le fond.
+     * @return le tas contenant les cartes données, dans l'ordre donné.
+     */
+    static <C extends Comparable<C>> Deck<C> ofOrdered(List<C> cards) {
+        return new Deck<C>(new ShuffledCards(cards.toArray(), null), 0);
     }
     
     /**
@@ -60,7 +91,7 @@ public final class Deck<C extends Comparable<C>> {
      * @return la taille du tas.
      */
     public int size() {
-        return listCards.size();
+        return cards.size() - start;
     }
     
     /**
@@ -83,7 +114,33 @@ public final class Deck<C extends Comparable<C>> {
         
         Preconditions.checkArgument(!isEmpty());
         
-        return listCards.get(0);           
+        cards.shuffleUpTo(start + 1);
+        
+        return card(start);
+    }
+    
+    /**
+     * Retourne la carte d'index donné, l'index 0 correspondant au sommet du tas.
+     * Le tas n'est mélangé que jusqu'à cette carte, si ce n'est pas déjà fait.
+     * 
+     * @param index
+     *          index de la carte, depuis le sommet du tas.
+     * @return la carte d'index donné.
+     * @exception IndexOutOfBoundsException
+     *          si l'index n'est pas compris entre 0 (inclus) et la taille du tas (exclue).
+     */
+    C get(int index) {
+        
+        Objects.checkIndex(index, size());
+        
+        cards.shuffleUpTo(start + index + 1);
+        
+        return card(start + index);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private C card(int index) {
+        return (C) cards.get(index);
     }
     
     /**
@@ -111,9 +168,13 @@ public final class Deck<C extends Comparable<C>> {
         Preconditions.checkArgument(0 <= count);
         Preconditions.checkArgument(count <= size());
         
-        ArrayList<C> subList = new ArrayList<C> (listCards.subList(0, count));
+        cards.shuffleUpTo(start + count);
+        
+        SortedBag.Builder<C> builder = new SortedBag.Builder<C>();
+        for (int i = start; i < start + count; i++)
+            builder.add(card(i));
         
-        return SortedBag.of(subList);
+        return builder.build();
     }
     
     /**
@@ -130,10 +191,66 @@ public final class Deck<C extends Comparable<C>> {
         Preconditions.checkArgument(0 <= count);
         Preconditions.checkArgument(count <= size());
         
-        ArrayList<C> subList = new ArrayList<C> (listCards.subList(count, size()));
+        return (count == 0) ? this : new Deck<C>(cards, start + count);
+    }
+    
+    /**
+     * Retourne la liste des cartes du tas, du sommet vers le fond.
+     * 
+     * @return la liste des cartes du tas, du sommet vers le fond.
+     */
+    List<C> toList() {
+        
+        cards.shuffleUpTo(cards.size());
+        
+        List<C> list = new ArrayList<C>(size());
+        for (int i = start; i < cards.size(); i++)
+            list.add(card(i));
+        
+        return list;
+    }
+    
+    /**
+     * Représente les cartes d'un tas, mélangées paresseusement (voir LazyShuffle).
+     * 
+     * @author Ilias Marwane Merigh (330316)
+     */
+    private static final class ShuffledCards extends LazyShuffle {
+        
+        private final Object[] cards;
+        
+        /**
+         * Construit les cartes mélangées paresseusement à partir des cartes données, au moyen d'un générateur
+         * qui leur est propre, obtenu en scindant le générateur donné. Si ce dernier est nul, les cartes ne sont pas mélangées.
+         * 
+         * @param cards
+         *          cartes à mélanger, ou cartes dans leur ordre définitif si le générateur est nul (le tableau n'est pas copié).
+         * @param rng
+         *          générateur de nombres aléatoires scindable, ou null.
+         */
+        ShuffledCards(Object[] cards, SplittableRandom rng) {
+            super(cards.length, rng);
+            this.cards = cards;
+        }
         
-        Deck<C> newDeck = new Deck<C>(subList);
+        @Override
+        void swap(int i, int j) {
+            Object card = cards[j];
+            cards[j] = cards[i];
+            cards[i] = card;
+        }
         
-        return newDeck;
+        /**
+         * Retourne la carte d'index donné, qui doit avoir été placée au moyen de shuffleUpTo.
+         * 
+         * @param index
+         *          index de la carte.
+         * @return la carte d'index donné.
+         */
+        Object get(int index) {
+            
+            assert isPlaced(index);
+            return cards[index];
+        }
     }
 }
@@ -294,8 +294,8 @@ public final class Game {
         int pointsPlayer1 = gameState.playerState(PlayerId.PLAYER_1).finalPoints();
         int pointsPlayer2 = gameState.playerState(PlayerId.PLAYER_2).finalPoints();
    
-        Trail longestTrail1 = Trail.longest(gameState.playerState(PlayerId.PLAYER_1).routes());
-        Trail longestTrail2 = Trail.longest(gameState.playerState(PlayerId.PLAYER_2).routes());
+        Trail longestTrail1 = gameState.playerState(PlayerId.PLAYER_1).longestTrail();
+        Trail longestTrail2 = gameState.playerState(PlayerId.PLAYER_2).longestTrail();
        
         if (longestTrail2.length() > longestTrail1.length())
             receiveInfoTwoPlayers(players, playerInfos.get(PlayerId.PLAYER_2).getsLongestTrailBonus(longestTrail2));
@@ -0,0 +1,1017 @@
+package ch.epfl.tchu.game;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.SortedBag;
+
+/**
+ * Représente l'état modifiable d'une partie de tCHu, destiné à l'exploration d'arbres de coups par les joueurs artificiels.
+ *
+ * Contrairement à GameState, dont chaque transition crée un nouvel état, un moteur applique les actions sur place
+ * (au moyen de apply) et les consigne dans un journal, qui permet d'annuler la dernière d'entre elles (au moyen de undo).
+ * Les cartes en main et la défausse sont empaquetées (voir PackedCardBag), de sorte qu'appliquer puis annuler
+ * une action ne nécessite en général aucune allocation.
+ *
+ * Un moteur peut être construit à partir d'un GameState, et retourner à tout moment l'état immuable correspondant.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+public final class GameEngine {
+
+    // Codes des entrées du journal, placés après les valeurs qu'ils concernent.
+    private static final int DRAW_FACE_UP_CARD = 0;
+    private static final int DRAW_BLIND_CARD = 1;
+    private static final int CLAIM_ROUTE = 2;
+    private static final int CHOOSE_TICKETS = 3;
+    private static final int END_TURN = 4;
+    private static final int RECREATE_CARDS_DECK = 5;
+    private static final int CHOOSE_INITIAL_TICKETS = 6;
+    private static final int REMOVE_TOP_TICKETS = 7;
+    private static final int REMOVE_TOP_CARD = 8;
+    private static final int DISCARD_CARDS = 9;
+
+    private static final int NO_PLAYER = -1;
+
+    private Deck<Ticket> ticketDeck;
+
+    // La pioche est la partie de cardDeck qui commence à l'index cardDeckTop.
+    private CardDeck cardDeck;
+    private int cardDeckTop;
+    private int faceUpCards;
+    private long discardedCards;
+    private int discardsSize;
+
+    // Etat des joueurs, indexé par l'ordinal de leur identité.
+    private final SortedBag<Ticket>[] tickets;
+    private final long[] cards;
+    private final int[] cardCounts;
+    private final Route[][] routes;
+    private final int[] routeCounts;
+    private final int[] carCounts;
+    private final int[] claimPoints;
+
+    private PlayerId currentPlayerId;
+    private PlayerId lastPlayer;
+
+    // Clefs de Zobrist des composantes publiques et privées de l'état (voir GameState.positionHash).
+    private long publicKey;
+    private long privateKey;
+
+    // Journal des actions appliquées : valeurs primitives d'une part, références d'autre part.
+    private long[] journal;
+    private int journalSize;
+    private Object[] objectJournal;
+    private int objectJournalSize;
+    private int depth;
+
+    /**
+     * Construit un moteur dont l'état initial est l'état de la partie donné, et dont le journal est vide.
+     *
+     * @param state
+     *          état de la partie.
+     */
+    @SuppressWarnings("unchecked")
+    public GameEngine(GameState state) {
+
+        ticketDeck = state.ticketDeck();
+
+        CardState cardState = state.completeCardState();
+        cardDeck = cardState.deck();
+        cardDeckTop = 0;
+        faceUpCards = cardState.packedFaceUpCards();
+        discardedCards = PackedCardBag.pack(cardState.discardedCards());
+        discardsSize = cardState.discardsSize();
+
+        tickets = (SortedBag<Ticket>[]) new SortedBag<?>[PlayerId.COUNT];
+        cards = new long[PlayerId.COUNT];
+        cardCounts = new int[PlayerId.COUNT];
+        routes = new Route[PlayerId.COUNT][];
+        routeCounts = new int[PlayerId.COUNT];
+        carCounts = new int[PlayerId.COUNT];
+        claimPoints = new int[PlayerId.COUNT];
+
+        for (PlayerId id : PlayerId.ALL) {
+            PlayerState playerState = state.playerState(id);
+            int i = id.ordinal();
+
+            tickets[i] = playerState.tickets();
+            cards[i] = PackedCardBag.pack(playerState.cardBag());
+            cardCounts[i] = playerState.cardCount();
+            routes[i] = playerState.routes().toArray(new Route[Constants.INITIAL_CAR_COUNT]);
+            routeCounts[i] = playerState.routes().size();
+            carCounts[i] = playerState.carCount();
+            claimPoints[i] = playerState.claimPoints();
+        }
+
+        currentPlayerId = state.currentPlayerId();
+        lastPlayer = state.lastPlayer();
+
+        publicKey = state.publicPositionHash();
+        privateKey = state.positionHash() ^ publicKey;
+
+        journal = new long[64];
+        objectJournal = new Object[8];
+    }
+
+    /**
+     * Retourne l'état immuable de la partie correspondant à l'état actuel du moteur.
+     *
+     * @return l'état immuable de la partie correspondant à l'état actuel du moteur.
+     */
+    public GameState toGameState() {
+
+        CardState cardState = CardState.of(faceUpCards, cardDeck.withoutTopCards(cardDeckTop), PackedCardBag.toCardBag(discardedCards));
+
+        PlayerState[] playerState = new PlayerState[PlayerId.COUNT];
+        for (int i = 0; i < PlayerId.COUNT; i++) {
+            List<Route> playerRoutes = Arrays.asList(Arrays.copyOf(routes[i], routeCounts[i]));
+            playerState[i] = new PlayerState(tickets[i], CanonicalCardBags.of(cards[i]), playerRoutes);
+        }
+
+        return GameState.of(ticketDeck, cardState, currentPlayerId, playerState, lastPlayer);
+    }
+
+    /**
+     * Applique l'action donnée à l'état du moteur, pour le compte du joueur courant (ou du joueur donné pour le choix
+     * des billets initiaux), et la consigne dans le journal.
+     * Les actions ont le même effet que les méthodes correspondantes de GameState (voir Action), la recréation de la pioche
+     * se faisant au moyen de recreateCardsDeckIfNeeded.
+     *
+     * @param action
+     *          action à appliquer.
+     * @exception IllegalArgumentException
+     *          si l'action n'est pas applicable dans l'état actuel : tirage de cartes alors que canDrawCards retourne faux
+     *          ou que la pioche est vide, retrait d'une carte d'une pioche vide, cartes de prise de route absentes de la main
+     *          du joueur courant, tirage ou retrait de plus de billets que n'en contient la pioche, choix des billets
+     *          initiaux d'un joueur qui en possède déjà, ou route ou billet ne faisant pas partie de ChMap. L'action
+     *          n'est alors ni appliquée ni consignée : l'état, les clefs et le journal du moteur sont inchangés.
+     */
+    public void apply(Action action) {
+
+        switch (action.kind()) {
+        case DRAW_FACE_UP_CARD:
+            drawFaceUpCard(action.slot());
+            break;
+        case DRAW_BLIND_CARD:
+            drawBlindCard();
+            break;
+        case CLAIM_ROUTE:
+            claimRoute(action.route(), action.packedCards);
+            break;
+        case CHOOSE_TICKETS:
+            chooseTickets(action.drawnTickets(), action.chosenTickets());
+            break;
+        case END_TURN:
+            endTurn();
+            break;
+        case CHOOSE_INITIAL_TICKETS:
+            chooseInitialTickets(action.playerId(), action.chosenTickets());
+            break;
+        case REMOVE_TOP_TICKETS:
+            removeTopTickets(action.count());
+            break;
+        case REMOVE_TOP_CARD:
+            removeTopCard();
+            break;
+        case DISCARD_CARDS:
+            discardCards(action.packedCards);
+            break;
+        default:
+            throw new Error();
+        }
+
+        depth++;
+    }
+
+    /**
+     * Recrée la pioche à partir de la défausse, mélangée au moyen du générateur donné, si elle est vide ;
+     * ne fait rien sinon. Dans les deux cas, l'appel est consigné dans le journal et compte comme une action pour undo.
+     *
+     * @param rng
+     *          générateur de nombres aléatoires scindable.
+     */
+    public void recreateCardsDeckIfNeeded(SplittableRandom rng) {
+
+        pushKeys();
+        pushObject(cardDeck);
+        push(cardDeckTop);
+        push(discardedCards);
+        push(RECREATE_CARDS_DECK);
+
+        if (isDeckEmpty()) {
+            publicKey ^= Zobrist.deckSize(0) ^ Zobrist.deckSize(discardsSize) ^ Zobrist.discardsSize(discardsSize) ^ Zobrist.discardsSize(0);
+            privateKey ^= Zobrist.discards(discardedCards) ^ Zobrist.discards(PackedCardBag.EMPTY);
+
+            cardDeck = CardDeck.of(PackedCardBag.toCardBag(discardedCards), rng);
+            cardDeckTop = 0;
+            discardedCards = PackedCardBag.EMPTY;
+            discardsSize = 0;
+        }
+
+        depth++;
+    }
+
+    /**
+     * Annule la dernière action consignée dans le journal, et l'en retire.
+     *
+     * @exception IllegalArgumentException
+     *          si le journal est vide.
+     */
+    public void undo() {
+
+        Preconditions.checkArgument(depth > 0);
+
+        int player = currentPlayerId.ordinal();
+
+        switch ((int) pop()) {
+        case DRAW_FACE_UP_CARD: {
+            int slot = (int) pop();
+            Card card = Card.ALL.get((int) pop());
+            cardDeckTop--;
+            faceUpCards = PackedFaceUpCards.with(faceUpCards, slot, card);
+            cards[player] = PackedCardBag.difference(cards[player], PackedCardBag.of(card));
+            cardCounts[player]--;
+            break;
+        }
+        case DRAW_BLIND_CARD: {
+            Card card = Card.ALL.get((int) pop());
+            cardDeckTop--;
+            cards[player] = PackedCardBag.difference(cards[player], PackedCardBag.of(card));
+            cardCounts[player]--;
+            break;
+        }
+        case CLAIM_ROUTE: {
+            long claimCards = pop();
+            int claimCardsCount = PackedCardBag.size(claimCards);
+            Route route = routes[player][--routeCounts[player]];
+            routes[player][routeCounts[player]] = null;
+            cards[player] = PackedCardBag.union(cards[player], claimCards);
+            cardCounts[player] += claimCardsCount;
+            discardedCards = PackedCardBag.difference(discardedCards, claimCards);
+            discardsSize -= claimCardsCount;
+            carCounts[player] += route.length();
+            claimPoints[player] -= route.claimPoints();
+            break;
+        }
+        case CHOOSE_TICKETS: {
+            @SuppressWarnings("unchecked")
+            SortedBag<Ticket> previousTickets = (SortedBag<Ticket>) popObject();
+            @SuppressWarnings("unchecked")
+            Deck<Ticket> previousTicketDeck = (Deck<Ticket>) popObject();
+            tickets[player] = previousTickets;
+            ticketDeck = previousTicketDeck;
+            break;
+        }
+        case END_TURN: {
+            int previousLastPlayer = (int) pop();
+            currentPlayerId = PlayerId.ALL.get((int) pop());
+            lastPlayer = (previousLastPlayer == NO_PLAYER) ? null : PlayerId.ALL.get(previousLastPlayer);
+            break;
+        }
+        case RECREATE_CARDS_DECK: {
+            discardedCards = pop();
+            discardsSize = PackedCardBag.size(discardedCards);
+            cardDeckTop = (int) pop();
+            cardDeck = (CardDeck) popObject();
+            break;
+        }
+        case CHOOSE_INITIAL_TICKETS: {
+            @SuppressWarnings("unchecked")
+            SortedBag<Ticket> previousTickets = (SortedBag<Ticket>) popObject();
+            tickets[(int) pop()] = previousTickets;
+            break;
+        }
+        case REMOVE_TOP_TICKETS: {
+            @SuppressWarnings("unchecked")
+            Deck<Ticket> previousTicketDeck = (Deck<Ticket>) popObject();
+            ticketDeck = previousTicketDeck;
+            break;
+        }
+        case REMOVE_TOP_CARD: {
+            cardDeckTop--;
+            break;
+        }
+        case DISCARD_CARDS: {
+            long addedCards = pop();
+            discardedCards = PackedCardBag.difference(discardedCards, addedCards);
+            discardsSize -= PackedCardBag.size(addedCards);
+            break;
+        }
+        default:
+            throw new Error();
+        }
+
+        privateKey = pop();
+        publicKey = pop();
+
+        depth--;
+    }
+
+    /**
+     * Retourne le nombre d'actions consignées dans le journal, c-à-d pouvant être annulées au moyen de undo.
+     *
+     * @return le nombre d'actions consignées dans le journal.
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Retourne la clef de hachage de 64 bits de l'état complet, égale à celle de l'état immuable correspondant
+     * (voir GameState.positionHash).
+     *
+     * @return la clef de hachage de 64 bits de l'état complet.
+     */
+    public long positionHash() {
+        return publicKey ^ privateKey;
+    }
+
+    /**
+     * Retourne la clef de hachage de 64 bits de la partie publique de l'état, égale à celle de l'état immuable correspondant
+     * (voir PublicGameState.publicPositionHash).
+     *
+     * @return la clef de hachage de 64 bits de la partie publique de l'état.
+     */
+    public long publicPositionHash() {
+        return publicKey;
+    }
+
+    /**
+     * Retourne l'identité du joueur courant.
+     *
+     * @return l'identité du joueur courant.
+     */
+    public PlayerId currentPlayerId() {
+        return currentPlayerId;
+    }
+
+    /**
+     * Retourne l'identité du dernier joueur, ou null si elle n'est pas encore connue.
+     *
+     * @return l'identité du dernier joueur, ou null si elle n'est pas encore connue.
+     */
+    public PlayerId lastPlayer() {
+        return lastPlayer;
+    }
+
+    /**
+     * Retourne vrai ssi le dernier tour commence à la fin du tour du joueur courant (voir GameState.lastTurnBegins).
+     *
+     * @return vrai ssi le dernier tour commence.
+     */
+    public boolean lastTurnBegins() {
+        return lastPlayer == null && carCounts[currentPlayerId.ordinal()] <= 2;
+    }
+
+    /**
+     * Retourne le nombre de billets de la pioche.
+     *
+     * @return le nombre de billets de la pioche.
+     */
+    public int ticketsCount() {
+        return ticketDeck.size();
+    }
+
+    /**
+     * Retourne vrai ssi il est possible de tirer des billets, c-à-d si la pioche des billets n'est pas vide.
+     *
+     * @return vrai ssi il est possible de tirer des billets.
+     */
+    public boolean canDrawTickets() {
+        return !ticketDeck.isEmpty();
+    }
+
+    /**
+     * Retourne les count billets du sommet de la pioche.
+     *
+     * @param count
+     *          nombre de billets.
+     * @return les count billets du sommet de la pioche.
+     * @exception IllegalArgumentException
+     *          si count n'est pas compris entre 0 et la taille de la pioche (inclus).
+     */
+    public SortedBag<Ticket> topTickets(int count) {
+        return ticketDeck.topCards(count);
+    }
+
+    /**
+     * Retourne la taille de la pioche des cartes.
+     *
+     * @return la taille de la pioche des cartes.
+     */
+    public int deckSize() {
+        return cardDeck.size() - cardDeckTop;
+    }
+
+    /**
+     * Retourne vrai ssi la pioche des cartes est vide.
+     *
+     * @return vrai ssi la pioche des cartes est vide.
+     */
+    public boolean isDeckEmpty() {
+        return deckSize() == 0;
+    }
+
+    /**
+     * Retourne la taille de la défausse.
+     *
+     * @return la taille de la défausse.
+     */
+    public int discardsSize() {
+        return discardsSize;
+    }
+
+    /**
+     * Retourne vrai ssi il est possible de tirer des cartes (voir PublicGameState.canDrawCards).
+     *
+     * @return vrai ssi il est possible de tirer des cartes.
+     */
+    public boolean canDrawCards() {
+        return deckSize() + discardsSize >= Constants.ADDITIONAL_TUNNEL_CARDS + Constants.DISCARDABLE_TICKETS_COUNT;
+    }
+
+    /**
+     * Retourne la carte se trouvant au sommet de la pioche.
+     *
+     * @return la carte se trouvant au sommet de la pioche.
+     * @exception IndexOutOfBoundsException
+     *          si la pioche est vide.
+     */
+    public Card topCard() {
+        return cardDeck.get(cardDeckTop);
+    }
+
+    /**
+     * Retourne la carte face visible à l'index donné.
+     *
+     * @param slot
+     *          index de la carte.
+     * @return la carte face visible à l'index donné.
+     * @exception IndexOutOfBoundsException
+     *          si cet index n'est pas compris entre 0 (inclus) et 5 (exclus).
+     */
+    public Card faceUpCard(int slot) {
+        return PackedFaceUpCards.get(faceUpCards, slot);
+    }
+
+    /**
+     * Retourne les 5 cartes face visible, empaquetées au moyen de PackedFaceUpCards.
+     *
+     * @return les 5 cartes face visible, empaquetées.
+     */
+    public int packedFaceUpCards() {
+        return faceUpCards;
+    }
+
+    /**
+     * Retourne les billets du joueur donné.
+     *
+     * @param playerId
+     *          identité du joueur.
+     * @return les billets du joueur donné.
+     */
+    public SortedBag<Ticket> tickets(PlayerId playerId) {
+        return tickets[playerId.ordinal()];
+    }
+
+    /**
+     * Retourne les cartes du joueur donné.
+     *
+     * @param playerId
+     *          identité du joueur.
+     * @return les cartes du joueur donné.
+     */
+    public SortedBag<Card> cards(PlayerId playerId) {
+        return CanonicalCardBags.of(cards[playerId.ordinal()]);
+    }
+
+    /**
+     * Retourne les cartes du joueur donné, empaquetées au moyen de PackedCardBag.
+     *
+     * @param playerId
+     *          identité du joueur.
+     * @return les cartes du joueur donné, empaquetées.
+     */
+    public long packedCards(PlayerId playerId) {
+        return cards[playerId.ordinal()];
+    }
+
+    /**
+     * Retourne le nombre de cartes du joueur donné.
+     *
+     * @param playerId
+     *          identité du joueur.
+     * @return le nombre de cartes du joueur donné.
+     */
+    public int cardCount(PlayerId playerId) {
+        return cardCounts[playerId.ordinal()];
+    }
+
+    /**
+     * Retourne les routes dont le joueur donné s'est emparé, dans l'ordre de leur prise.
+     *
+     * @param playerId
+     *          identité du joueur.
+     * @return les routes dont le joueur donné s'est emparé.
+     */
+    public List<Route> routes(PlayerId playerId) {
+
+        int i = playerId.ordinal();
+        return List.of(Arrays.copyOf(routes[i], routeCounts[i]));
+    }
+
+    /**
+     * Retourne le nombre de wagons du joueur donné.
+     *
+     * @param playerId
+     *          identité du joueur.
+     * @return le nombre de wagons du joueur donné.
+     */
+    public int carCount(PlayerId playerId) {
+        return carCounts[playerId.ordinal()];
+    }
+
+    /**
+     * Retourne le nombre de points de construction obtenus par le joueur donné.
+     *
+     * @param playerId
+     *          identité du joueur.
+     * @return le nombre de points de construction obtenus par le joueur donné.
+     */
+    public int claimPoints(PlayerId playerId) {
+        return claimPoints[playerId.ordinal()];
+    }
+
+    private void drawFaceUpCard(int slot) {
+
+        Preconditions.checkArgument(canDrawCards() && !isDeckEmpty());
+
+        int player = currentPlayerId.ordinal();
+        Card card = PackedFaceUpCards.get(faceUpCards, slot);
+        Card newCard = topCard();
+        long newCards = PackedCardBag.union(cards[player], PackedCardBag.of(card));
+
+        pushKeys();
+        publicKey ^= Zobrist.faceUpCard(slot, card) ^ Zobrist.faceUpCard(slot, newCard);
+        drawnCardKeys(card);
+
+        faceUpCards = PackedFaceUpCards.with(faceUpCards, slot, newCard);
+        cardDeckTop++;
+        cards[player] = newCards;
+        cardCounts[player]++;
+
+        push(card.ordinal());
+        push(slot);
+        push(DRAW_FACE_UP_CARD);
+    }
+
+    private void drawBlindCard() {
+
+        Preconditions.checkArgument(canDrawCards() && !isDeckEmpty());
+
+        int player = currentPlayerId.ordinal();
+        Card card = topCard();
+        long newCards = PackedCardBag.union(cards[player], PackedCardBag.of(card));
+
+        pushKeys();
+        drawnCardKeys(card);
+
+        cardDeckTop++;
+        cards[player] = newCards;
+        cardCounts[player]++;
+
+        push(card.ordinal());
+        push(DRAW_BLIND_CARD);
+    }
+
+    private void claimRoute(Route route, long claimCards) {
+
+        int player = currentPlayerId.ordinal();
+
+        // Les cartes doivent être en main, faute de quoi l'action ne pourrait pas être annulée exactement.
+        Preconditions.checkArgument(PackedCardBag.contains(cards[player], claimCards));
+
+        int claimCardsCount = PackedCardBag.size(claimCards);
+        long newCards = PackedCardBag.difference(cards[player], claimCards);
+        long newDiscardedCards = PackedCardBag.union(discardedCards, claimCards);
+        long routeKey = Zobrist.route(currentPlayerId, route);
+
+        pushKeys();
+        publicKey ^= routeKey
+                ^ Zobrist.cardCount(currentPlayerId, cardCounts[player]) ^ Zobrist.cardCount(currentPlayerId, cardCounts[player] - claimCardsCount)
+                ^ Zobrist.discardsSize(discardsSize) ^ Zobrist.discardsSize(discardsSize + claimCardsCount);
+        privateKey ^= Zobrist.cards(currentPlayerId, cards[player]) ^ Zobrist.cards(currentPlayerId, newCards)
+                ^ Zobrist.discards(discardedCards) ^ Zobrist.discards(newDiscardedCards);
+
+        cards[player] = newCards;
+        cardCounts[player] -= claimCardsCount;
+        discardedCards = newDiscardedCards;
+        discardsSize += claimCardsCount;
+
+        if (routeCounts[player] == routes[player].length)
+            routes[player] = Arrays.copyOf(routes[player], 2 * routes[player].length);
+        routes[player][routeCounts[player]++] = route;
+        carCounts[player] -= route.length();
+        claimPoints[player] += route.claimPoints();
+
+        push(claimCards);
+        push(CLAIM_ROUTE);
+    }
+
+    private void chooseTickets(SortedBag<Ticket> drawnTickets, SortedBag<Ticket> chosenTickets) {
+
+        Preconditions.checkArgument(drawnTickets.size() <= ticketDeck.size());
+
+        int player = currentPlayerId.ordinal();
+        Deck<Ticket> newTicketDeck = ticketDeck.withoutTopCards(drawnTickets.size());
+        SortedBag<Ticket> newTickets = tickets[player].union(chosenTickets);
+        long ticketsKey = Zobrist.addedTickets(currentPlayerId, tickets[player], chosenTickets);
+
+        pushKeys();
+        pushObject(ticketDeck);
+        pushObject(tickets[player]);
+        push(CHOOSE_TICKETS);
+
+        publicKey ^= Zobrist.ticketsCount(ticketDeck.size()) ^ Zobrist.ticketsCount(newTicketDeck.size())
+                ^ Zobrist.ticketCount(currentPlayerId, tickets[player].size()) ^ Zobrist.ticketCount(currentPlayerId, newTickets.size());
+        privateKey ^= ticketsKey;
+
+        ticketDeck = newTicketDeck;
+        tickets[player] = newTickets;
+    }
+
+    private void endTurn() {
+
+        pushKeys();
+        push(currentPlayerId.ordinal());
+        push((lastPlayer == null) ? NO_PLAYER : lastPlayer.ordinal());
+        push(END_TURN);
+
+        PlayerId newLastPlayer = lastTurnBegins() ? currentPlayerId : lastPlayer;
+        PlayerId newCurrentPlayerId = currentPlayerId.next();
+
+        publicKey ^= Zobrist.currentPlayer(currentPlayerId) ^ Zobrist.currentPlayer(newCurrentPlayerId)
+                ^ Zobrist.lastPlayer(lastPlayer) ^ Zobrist.lastPlayer(newLastPlayer);
+
+        lastPlayer = newLastPlayer;
+        currentPlayerId = newCurrentPlayerId;
+    }
+
+    private void chooseInitialTickets(PlayerId playerId, SortedBag<Ticket> chosenTickets) {
+
+        int player = playerId.ordinal();
+
+        Preconditions.checkArgument(tickets[player].isEmpty());
+        long ticketsKey = Zobrist.tickets(playerId, chosenTickets);
+
+        pushKeys();
+        push(player);
+        pushObject(tickets[player]);
+        push(CHOOSE_INITIAL_TICKETS);
+
+        publicKey ^= Zobrist.ticketCount(playerId, 0) ^ Zobrist.ticketCount(playerId, chosenTickets.size());
+        privateKey ^= ticketsKey;
+
+        tickets[player] = chosenTickets;
+    }
+
+    private void removeTopTickets(int count) {
+
+        Deck<Ticket> newTicketDeck = ticketDeck.withoutTopCards(count);
+
+        pushKeys();
+        pushObject(ticketDeck);
+        push(REMOVE_TOP_TICKETS);
+
+        publicKey ^= Zobrist.ticketsCount(ticketDeck.size()) ^ Zobrist.ticketsCount(newTicketDeck.size());
+
+        ticketDeck = newTicketDeck;
+    }
+
+    private void removeTopCard() {
+
+        Preconditions.checkArgument(!isDeckEmpty());
+
+        pushKeys();
+        push(REMOVE_TOP_CARD);
+
+        publicKey ^= Zobrist.deckSize(deckSize()) ^ Zobrist.deckSize(deckSize() - 1);
+
+        cardDeckTop++;
+    }
+
+    private void discardCards(long addedCards) {
+
+        int addedCardsCount = PackedCardBag.size(addedCards);
+        long newDiscardedCards = PackedCardBag.union(discardedCards, addedCards);
+
+        pushKeys();
+        push(addedCards);
+        push(DISCARD_CARDS);
+
+        publicKey ^= Zobrist.discardsSize(discardsSize) ^ Zobrist.discardsSize(discardsSize + addedCardsCount);
+        privateKey ^= Zobrist.discards(discardedCards) ^ Zobrist.discards(newDiscardedCards);
+
+        discardedCards = newDiscardedCards;
+        discardsSize += addedCardsCount;
+    }
+
+    // Met à jour les clefs pour le tirage, par le joueur courant, de la carte donnée depuis la pioche ou les cartes face visible.
+    private void drawnCardKeys(Card card) {
+
+        int player = currentPlayerId.ordinal();
+        int count = PackedCardBag.countOf(cards[player], card);
+
+        publicKey ^= Zobrist.deckSize(deckSize()) ^ Zobrist.deckSize(deckSize() - 1)
+                ^ Zobrist.cardCount(currentPlayerId, cardCounts[player]) ^ Zobrist.cardCount(currentPlayerId, cardCounts[player] + 1);
+        privateKey ^= Zobrist.card(currentPlayerId, card, count) ^ Zobrist.card(currentPlayerId, card, count + 1);
+    }
+
+    private void pushKeys() {
+        push(publicKey);
+        push(privateKey);
+    }
+
+    private void push(long value) {
+
+        if (journalSize == journal.length)
+            journal = Arrays.copyOf(journal, 2 * journal.length);
+        journal[journalSize++] = value;
+    }
+
+    private long pop() {
+        return journal[--journalSize];
+    }
+
+    private void pushObject(Object value) {
+
+        if (objectJournalSize == objectJournal.length)
+            objectJournal = Arrays.copyOf(objectJournal, 2 * objectJournal.length);
+        objectJournal[objectJournalSize++] = value;
+    }
+
+    private Object popObject() {
+
+        Object value = objectJournal[--objectJournalSize];
+        objectJournal[objectJournalSize] = null;
+        return value;
+    }
+
+    /**
+     * Représente une action qu'un moteur peut appliquer, correspondant à l'une des transitions de GameState :
+     * <ul>
+     * <li>drawFaceUpCard : withDrawnFaceUpCard,</li>
+     * <li>drawBlindCard : withBlindlyDrawnCard,</li>
+     * <li>claimRoute : withClaimedRoute, y compris pour un tunnel, les cartes additionnelles faisant partie des cartes données,</li>
+     * <li>chooseTickets : withChosenAdditionalTickets,</li>
+     * <li>endTurn : forNextTurn,</li>
+     * <li>chooseInitialTickets : withInitiallyChosenTickets,</li>
+     * <li>removeTopTickets : withoutTopTickets,</li>
+     * <li>removeTopCard : withoutTopCard (p.ex. pour les cartes additionnelles d'un tunnel),</li>
+     * <li>discardCards : withMoreDiscardedCards.</li>
+     * </ul>
+     * Toutes, sauf chooseInitialTickets, sont appliquées pour le compte du joueur courant.
+     * Les actions sans paramètre, ou dont le seul paramètre est un emplacement de carte face visible, sont partagées.
+     *
+     * @author Ilias Marwane Merigh (330316)
+     */
+    public static final class Action {
+
+        /**
+         * Type d'une action.
+         */
+        public enum Kind {
+            DRAW_FACE_UP_CARD,
+            DRAW_BLIND_CARD,
+            CLAIM_ROUTE,
+            CHOOSE_TICKETS,
+            END_TURN,
+            CHOOSE_INITIAL_TICKETS,
+            REMOVE_TOP_TICKETS,
+            REMOVE_TOP_CARD,
+            DISCARD_CARDS;
+        }
+
+        private static final Action[] FACE_UP_CARD_DRAWS = faceUpCardDraws();
+        private static final Action BLIND_CARD_DRAW = new Action(Kind.DRAW_BLIND_CARD, -1, null, null, null, null);
+        private static final Action TURN_END = new Action(Kind.END_TURN, -1, null, null, null, null);
+        private static final Action TOP_CARD_REMOVAL = new Action(Kind.REMOVE_TOP_CARD, -1, null, null, null, null);
+
+        private final Kind kind;
+        // Emplacement de la carte face visible tirée, nombre de billets retirés ou ordinal du joueur choisissant ses billets initiaux.
+        private final int index;
+        private final Route route;
+        private final SortedBag<Card> cards;
+        private final long packedCards;
+        private final SortedBag<Ticket> drawnTickets;
+        private final SortedBag<Ticket> chosenTickets;
+
+        private Action(Kind kind, int index, Route route, SortedBag<Card> cards, SortedBag<Ticket> drawnTickets, SortedBag<Ticket> chosenTickets) {
+            this.kind = kind;
+            this.index = index;
+            this.route = route;
+            this.cards = cards;
+            this.packedCards = (cards == null) ? PackedCardBag.EMPTY : PackedCardBag.pack(cards);
+            this.drawnTickets = drawnTickets;
+            this.chosenTickets = chosenTickets;
+        }
+
+        private static Action[] faceUpCardDraws() {
+
+            Action[] actions = new Action[Constants.FACE_UP_CARDS_COUNT];
+            for (int slot = 0; slot < actions.length; slot++)
+                actions[slot] = new Action(Kind.DRAW_FACE_UP_CARD, slot, null, null, null, null);
+
+            return actions;
+        }
+
+        /**
+         * Retourne l'action consistant à tirer la carte face visible de l'emplacement donné.
+         *
+         * @param slot
+         *          index de l'emplacement.
+         * @return l'action consistant à tirer la carte face visible de l'emplacement donné.
+         * @exception IndexOutOfBoundsException
+         *          si l'index n'est pas compris entre 0 (inclus) et 5 (exclus).
+         */
+        public static Action drawFaceUpCard(int slot) {
+            return FACE_UP_CARD_DRAWS[Objects.checkIndex(slot, Constants.FACE_UP_CARDS_COUNT)];
+        }
+
+        /**
+         * Retourne l'action consistant à tirer la carte du sommet de la pioche.
+         *
+         * @return l'action consistant à tirer la carte du sommet de la pioche.
+         */
+        public static Action drawBlindCard() {
+            return BLIND_CARD_DRAW;
+        }
+
+        /**
+         * Retourne l'action consistant à s'emparer de la route donnée au moyen des cartes données.
+         *
+         * @param route
+         *          route dont s'emparer.
+         * @param cards
+         *          cartes utilisées, y compris les éventuelles cartes additionnelles d'un tunnel.
+         * @return l'action consistant à s'emparer de la route donnée au moyen des cartes données.
+         */
+        public static Action claimRoute(Route route, SortedBag<Card> cards) {
+            return new Action(Kind.CLAIM_ROUTE, -1, Objects.requireNonNull(route), cards, null, null);
+        }
+
+        /**
+         * Retourne l'action consistant à tirer les billets donnés du sommet de la pioche, et à garder ceux choisis.
+         *
+         * @param drawnTickets
+         *          billets tirés.
+         * @param chosenTickets
+         *          billets gardés.
+         * @return l'action consistant à tirer les billets donnés et à garder ceux choisis.
+         * @exception IllegalArgumentException
+         *          si les billets gardés ne sont pas inclus dans les billets tirés.
+         */
+        public static Action chooseTickets(SortedBag<Ticket> drawnTickets, SortedBag<Ticket> chosenTickets) {
+
+            Preconditions.checkArgument(drawnTickets.contains(chosenTickets));
+
+            return new Action(Kind.CHOOSE_TICKETS, -1, null, null, drawnTickets, chosenTickets);
+        }
+
+        /**
+         * Retourne l'action consistant à terminer le tour du joueur courant (voir GameState.forNextTurn).
+         *
+         * @return l'action consistant à terminer le tour du joueur courant.
+         */
+        public static Action endTurn() {
+            return TURN_END;
+        }
+
+        /**
+         * Retourne l'action consistant, pour le joueur donné, à garder les billets initiaux donnés
+         * (voir GameState.withInitiallyChosenTickets).
+         *
+         * @param playerId
+         *          identité du joueur.
+         * @param chosenTickets
+         *          billets gardés.
+         * @return l'action consistant, pour le joueur donné, à garder les billets initiaux donnés.
+         */
+        public static Action chooseInitialTickets(PlayerId playerId, SortedBag<Ticket> chosenTickets) {
+            return new Action(Kind.CHOOSE_INITIAL_TICKETS, playerId.ordinal(), null, null, null, Objects.requireNonNull(chosenTickets));
+        }
+
+        /**
+         * Retourne l'action consistant à retirer les count billets du sommet de la pioche (voir GameState.withoutTopTickets).
+         *
+         * @param count
+         *          nombre de billets à retirer.
+         * @return l'action consistant à retirer les count billets du sommet de la pioche.
+         * @exception IllegalArgumentException
+         *          si count est strictement négatif.
+         */
+        public static Action removeTopTickets(int count) {
+
+            Preconditions.checkArgument(count >= 0);
+
+            return new Action(Kind.REMOVE_TOP_TICKETS, count, null, null, null, null);
+        }
+
+        /**
+         * Retourne l'action consistant à retirer la carte du sommet de la pioche (voir GameState.withoutTopCard).
+         *
+         * @return l'action consistant à retirer la carte du sommet de la pioche.
+         */
+        public static Action removeTopCard() {
+            return TOP_CARD_REMOVAL;
+        }
+
+        /**
+         * Retourne l'action consistant à ajouter les cartes données à la défausse (voir GameState.withMoreDiscardedCards).
+         *
+         * @param cards
+         *          cartes à ajouter à la défausse.
+         * @return l'action consistant à ajouter les cartes données à la défausse.
+         */
+        public static Action discardCards(SortedBag<Card> cards) {
+            return new Action(Kind.DISCARD_CARDS, -1, null, Objects.requireNonNull(cards), null, null);
+        }
+
+        /**
+         * Retourne le type de l'action.
+         *
+         * @return le type de l'action.
+         */
+        public Kind kind() {
+            return kind;
+        }
+
+        /**
+         * Retourne l'emplacement de la carte face visible tirée, ou -1 si l'action n'en tire pas.
+         *
+         * @return l'emplacement de la carte face visible tirée, ou -1.
+         */
+        public int slot() {
+            return (kind == Kind.DRAW_FACE_UP_CARD) ? index : -1;
+        }
+
+        /**
+         * Retourne le nombre de billets retirés du sommet de la pioche, ou -1 si l'action n'en retire pas.
+         *
+         * @return le nombre de billets retirés du sommet de la pioche, ou -1.
+         */
+        public int count() {
+            return (kind == Kind.REMOVE_TOP_TICKETS) ? index : -1;
+        }
+
+        /**
+         * Retourne l'identité du joueur choisissant ses billets initiaux, ou null si l'action n'est pas un tel choix.
+         *
+         * @return l'identité du joueur choisissant ses billets initiaux, ou null.
+         */
+        public PlayerId playerId() {
+            return (kind == Kind.CHOOSE_INITIAL_TICKETS) ? PlayerId.ALL.get(index) : null;
+        }
+
+        /**
+         * Retourne la route dont s'emparer, ou null si l'action n'en est pas une prise.
+         *
+         * @return la route dont s'emparer, ou null.
+         */
+        public Route route() {
+            return route;
+        }
+
+        /**
+         * Retourne les cartes utilisées pour s'emparer de la route ou ajoutées à la défausse, ou null si l'action n'est
+         * ni une prise de route, ni un ajout à la défausse.
+         *
+         * @return les cartes utilisées pour s'emparer de la route ou ajoutées à la défausse, ou null.
+         */
+        public SortedBag<Card> cards() {
+            return cards;
+        }
+
+        /**
+         * Retourne les billets tirés, ou null si l'action n'est pas un tirage de billets.
+         *
+         * @return les billets tirés, ou null.
+         */
+        public SortedBag<Ticket> drawnTickets() {
+            return drawnTickets;
+        }
+
+        /**
+         * Retourne les billets gardés, ou null si l'action n'est ni un tirage de billets, ni un choix de billets initiaux.
+         *
+         * @return les billets gardés, ou null.
+         */
+        public SortedBag<Ticket> chosenTickets() {
+            return chosenTickets;
+        }
+    }
+}
@@ -1,10 +1,9 @@
 package ch.epfl.tchu.game;
 
 import java.util.ArrayList;
-import java.util.EnumMap;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
+import java.util.SplittableRandom;
 
 import ch.epfl.tchu.Preconditions;
 import ch.epfl.tchu.SortedBag;
@@ -18,12 +17,23 @@ public final class GameState extends PublicGameState {
 	
 	private final Deck<Ticket> gameTickets;
 	private final CardState completeCardState;
-	private final Map<PlayerId, PlayerState> completePlayerState;
-	private PlayerId gameLastPlayer;
+	// Etat des joueurs, indexé par l'ordinal de leur identité. Le tableau n'est jamais modifié,
+	// et est partagé avec les états suivants tant qu'aucun joueur ne change.
+	private final PlayerState[] completePlayerState;
+	
+	// Clefs de Zobrist des composantes publiques et privées de l'état, mises à jour à chaque transition.
+	private final long publicKey;
+	private final long privateKey;
+
+	private GameState(Deck<Ticket> tickets, CardState cardState, PlayerId currentPlayerId, PlayerState[] playerState, PlayerId lastPlayer) {
+		this(tickets, cardState, currentPlayerId, playerState, lastPlayer,
+				Zobrist.publicKey(tickets.size(), cardState, currentPlayerId, playerState, lastPlayer),
+				Zobrist.privateKey(cardState, playerState));
+	}
 
-	private GameState(Deck<Ticket> tickets, CardState cardState, PlayerId currentPlayerId, Map<PlayerId, PlayerState> playerState, PlayerId lastPlayer) {
+	private GameState(Deck<Ticket> tickets, CardState cardState, PlayerId currentPlayerId, PlayerState[] playerState, PlayerId lastPlayer, long publicKey, long privateKey) {
 						
-		super(tickets.size(), cardState, currentPlayerId, Map.copyOf(playerState), lastPlayer);
+		super(tickets.size(), cardState, currentPlayerId, playerState, lastPlayer);
 		
 		Objects.requireNonNull(tickets);
 		Objects.requireNonNull(cardState);
@@ -31,9 +41,29 @@ public final class GameState extends PublicGameState {
 		this.gameTickets = tickets;
 		this.completePlayerState  = playerState;		
 		this.completeCardState  = cardState;		
-		this.gameLastPlayer  = lastPlayer;
+		this.publicKey = publicKey;
+		this.privateKey = privateKey;
 	}
 	
+	/**
+	 * Retourne l'état de la partie dont les composantes sont celles données.
+	 * 
+	 * @param tickets
+	 *         pioche des billets.
+	 * @param cardState
+	 *         état des cartes wagon/locomotive.
+	 * @param currentPlayerId
+	 *         joueur courant.
+	 * @param playerState
+	 *         état de chacun des joueurs, indexé par l'ordinal de leur identité (le tableau n'est pas copié).
+	 * @param lastPlayer
+	 *         dernier joueur, ou null s'il n'est pas encore connu.
+	 * @return l'état de la partie dont les composantes sont celles données.
+	 */
+	static GameState of(Deck<Ticket> tickets, CardState cardState, PlayerId currentPlayerId, PlayerState[] playerState, PlayerId lastPlayer) {
+		return new GameState(tickets, cardState, currentPlayerId, playerState, lastPlayer);
+	}
+
 	/**
 	 * Construit l'état initial d'une partie de tCHu dans laquelle:
      * La pioche des billets contient les billets donnés et 
@@ -48,10 +78,25 @@ public final class GameState extends PublicGameState {
 	 * @return l'état initial de la partie construite.
 	 */
 	public static GameState initial(SortedBag<Ticket> tickets, Random rng) {
+		return initial(tickets, new SplittableRandom(rng.nextLong()));
+	}
+
+	/**
+	 * Construit l'état initial d'une partie de tCHu, comme initial(SortedBag, Random), mais au moyen d'un générateur
+	 * aléatoire scindable : les pioches sont mélangées au moyen de générateurs qui en sont scindés. Pour un même générateur,
+	 * par exemple obtenu au moyen de RandomStreams.forGame, l'état construit est toujours le même.
+	 * 
+	 * @param tickets
+	 *         billets donnés.
+	 * @param rng
+	 *         générateur aléatoire scindable.
+	 * @return l'état initial de la partie construite.
+	 */
+	public static GameState initial(SortedBag<Ticket> tickets, SplittableRandom rng) {
 
 		// Cards
 		//
-		Deck<Card> deckCards = Deck.of(Constants.ALL_CARDS, rng);	
+		CardDeck deckCards = CardDeck.of(Constants.ALL_CARDS, rng);	
 
 		SortedBag<Card> player1Cards = deckCards.topCards(Constants.INITIAL_CARDS_COUNT);
 	    deckCards = deckCards.withoutTopCards(Constants.INITIAL_CARDS_COUNT);
@@ -68,9 +113,9 @@ public final class GameState extends PublicGameState {
 		SortedBag<Ticket> player1Tickets = SortedBag.of();
 		SortedBag<Ticket> player2Tickets = SortedBag.of();
 		
-		Map<PlayerId, PlayerState> playerState = new EnumMap<>(PlayerId.class);
-		playerState.put(PlayerId.PLAYER_1, new PlayerState(player1Tickets, player1Cards, new ArrayList<Route>()));
-		playerState.put(PlayerId.PLAYER_2, new PlayerState(player2Tickets, player2Cards, new ArrayList<Route>()));
+		PlayerState[] playerState = new PlayerState[PlayerId.COUNT];
+		playerState[PlayerId.PLAYER_1.ordinal()] = new PlayerState(player1Tickets, player1Cards, new ArrayList<Route>());
+		playerState[PlayerId.PLAYER_2.ordinal()] = new PlayerState(player2Tickets, player2Cards, new ArrayList<Route>());
 
 		
 		PlayerId currentPlayerId = (rng.nextInt(2) == 0)? PlayerId.PLAYER_1 : PlayerId.PLAYER_2;
@@ -79,13 +124,31 @@ public final class GameState extends PublicGameState {
 		return new GameState(deckTickets, cardState, currentPlayerId, playerState, lastPlayer);
 	}	
 
+	/**
+	 * Retourne la pioche des billets.
+	 * 
+	 * @return la pioche des billets.
+	 */
+	Deck<Ticket> ticketDeck() {
+		return gameTickets;
+	}
+
+	/**
+	 * Retourne l'état complet des cartes wagon/locomotive.
+	 * 
+	 * @return l'état complet des cartes wagon/locomotive.
+	 */
+	CardState completeCardState() {
+		return completeCardState;
+	}
+
 	/**
      * Retourne l'état du joueur d'identité donnée. 
      * 
      * @return l'état du joueur d'identité donnée.
      */           	
 	public PlayerState playerState(PlayerId playerId) {
-		return completePlayerState.get(playerId);
+		return completePlayerState[playerId.ordinal()];
 	}
 
 	 /**
@@ -94,7 +157,7 @@ public final class GameState extends PublicGameState {
      * @return l'état du joueur courant     
      */           	
 	public PlayerState currentPlayerState() {
-		return completePlayerState.get(currentPlayerId());
+		return completePlayerState[currentPlayerId().ordinal()];
 	}
 
 	/**
@@ -121,7 +184,7 @@ public final class GameState extends PublicGameState {
      *         si count n'est pas compris entre 0 et la taille de la pioche (inclus)
      */
 	public GameState withoutTopTickets(int count) {
-		return new GameState(gameTickets.withoutTopCards(count), completeCardState, currentPlayerId(), completePlayerState, lastPlayer());	
+		return next(gameTickets.withoutTopCards(count), completeCardState, null, null, null, 0);
 	};
 
 	/**
@@ -143,7 +206,7 @@ public final class GameState extends PublicGameState {
      * @return Etat identique au récepteur, mais sans la carte du sommet.
      */
 	public GameState withoutTopCard() {
-		return new GameState(gameTickets, completeCardState.withoutTopDeckCard(), currentPlayerId(), completePlayerState, lastPlayer());
+		return next(gameTickets, completeCardState.withoutTopDeckCard(), null, null, null, 0);
 	};
 
 	/**
@@ -155,7 +218,7 @@ public final class GameState extends PublicGameState {
      */
 	public GameState withMoreDiscardedCards(SortedBag<Card> discardedCards) {
 		
-		return new GameState(gameTickets, completeCardState.withMoreDiscardedCards(discardedCards), currentPlayerId(), completePlayerState, lastPlayer());
+		return next(gameTickets, completeCardState.withMoreDiscardedCards(discardedCards), null, null, null, 0);
 	}
 	
 	/**
@@ -175,7 +238,27 @@ public final class GameState extends PublicGameState {
 		if (!completeCardState.isDeckEmpty())
 			return this;
 
-		return new GameState(gameTickets, completeCardState.withDeckRecreatedFromDiscards(rng), currentPlayerId(), completePlayerState, lastPlayer());		
+		return next(gameTickets, completeCardState.withDeckRecreatedFromDiscards(rng), null, null, null, 0);
+	}
+
+	/**
+     * Retourne un état identique au récepteur sauf si la pioche de cartes est vide, auquel 
+     * cas elle est recréée à partir de la défausse, mélangée au moyen du générateur 
+     * aléatoire scindable donné.
+     * 
+     * @param rng
+     *          générateur de nombres aléatoires scindable.
+     * @return
+     *          un état identique au récepteur sauf si la pioche de cartes est vide, auquel 
+     *          cas elle est recréée à partir de la défausse, mélangée au moyen du 
+     *          générateur.
+     */ 
+	public GameState withCardsDeckRecreatedIfNeeded(SplittableRandom rng) {
+		
+		if (!completeCardState.isDeckEmpty())
+			return this;
+
+		return next(gameTickets, completeCardState.withDeckRecreatedFromDiscards(rng), null, null, null, 0);
 	}	
 	
 	/**
@@ -193,20 +276,14 @@ public final class GameState extends PublicGameState {
      */
 	public GameState withInitiallyChosenTickets(PlayerId playerId, SortedBag<Ticket> chosenTickets) {
 		
-		PlayerState thisPlayerState = completePlayerState.get(playerId);		
+		PlayerState thisPlayerState = playerState(playerId);		
 		Preconditions.checkArgument(thisPlayerState.ticketPoints() == 0);
 		
 		PlayerState newPlayerState = new PlayerState(chosenTickets, thisPlayerState.cards(), thisPlayerState.routes());
-		
-		PlayerId otherPlayerId = playerId.next();
-		PlayerState otherPlayerState = completePlayerState.get(otherPlayerId);		
-		
-		Map<PlayerId, PlayerState> newcompletePlayerState = new EnumMap<>(PlayerId.class);
-		newcompletePlayerState.put(playerId, newPlayerState);
-		newcompletePlayerState.put(otherPlayerId, otherPlayerState);
 				
-		return new GameState(gameTickets, completeCardState, currentPlayerId(), newcompletePlayerState, lastPlayer());
-		
+		// Les billets du joueur sont remplacés : la clef de hachage change de celle des anciens et de celle des nouveaux.
+		long ticketsKey = Zobrist.tickets(playerId, thisPlayerState.tickets()) ^ Zobrist.tickets(playerId, chosenTickets);
+		return next(gameTickets, completeCardState, playerId, newPlayerState, null, ticketsKey);
 	}
 
 	/**
@@ -227,25 +304,16 @@ public final class GameState extends PublicGameState {
      */
 	public GameState withChosenAdditionalTickets(SortedBag<Ticket> drawnTickets, SortedBag<Ticket> chosenTickets) {
 
-		PlayerId thisPlayer = currentPlayerId();
-		PlayerId otherPlayer = currentPlayerId().next();
-		
 		Preconditions.checkArgument(drawnTickets.contains(chosenTickets));
 
-		PlayerState playerState = completePlayerState.get(thisPlayer);		
-		PlayerState newPlayerState = playerState.withAddedTickets(chosenTickets);
-		
-		PlayerState otherPlayerState = completePlayerState.get(otherPlayer);		
-
-		Map<PlayerId, PlayerState> newcompletePlayerState = new EnumMap<>(PlayerId.class);
-		newcompletePlayerState.put(thisPlayer, newPlayerState);
-		newcompletePlayerState.put(otherPlayer, otherPlayerState);
+		PlayerState newPlayerState = currentPlayerState().withAddedTickets(chosenTickets);
 		
 		// Retirer les billets de la pioche.
 		//
 		Deck<Ticket> newGameTickets = gameTickets.withoutTopCards(drawnTickets.size());
 				
-		return new GameState(newGameTickets, completeCardState, currentPlayerId(), newcompletePlayerState, lastPlayer());
+		long ticketsKey = Zobrist.addedTickets(currentPlayerId(), currentPlayerState().tickets(), chosenTickets);
+		return next(newGameTickets, completeCardState, currentPlayerId(), newPlayerState, null, ticketsKey);
 	}
 	
 	/**
@@ -266,20 +334,12 @@ public final class GameState extends PublicGameState {
 
 		Preconditions.checkArgument(canDrawCards());
 		
-		PlayerId thisPlayer = currentPlayerId();
-		PlayerId otherPlayer = currentPlayerId().next();
-		Map<PlayerId, PlayerState> newcompletePlayerState = new EnumMap<>(PlayerId.class);
-
 		Card faceUpCard = completeCardState.faceUpCard(slot);
 		CardState newcompleteCardState = completeCardState.withDrawnFaceUpCard(slot);
 		
-		PlayerState newPlayerState = completePlayerState.get(thisPlayer).withAddedCard(faceUpCard);
-		PlayerState otherPlayerState = completePlayerState.get(otherPlayer);		
-		newcompletePlayerState.put(thisPlayer, newPlayerState);
-		newcompletePlayerState.put(otherPlayer, otherPlayerState);
+		PlayerState newPlayerState = currentPlayerState().withAddedCard(faceUpCard);
 								
-		return new GameState(gameTickets, newcompleteCardState, currentPlayerId(), newcompletePlayerState, lastPlayer());
-
+		return next(gameTickets, newcompleteCardState, currentPlayerId(), newPlayerState, null, 0);
 	}
 	
 	/**
@@ -297,19 +357,12 @@ public final class GameState extends PublicGameState {
 
 		Preconditions.checkArgument(canDrawCards());
 		
-		PlayerId thisPlayer = currentPlayerId();
-		PlayerId otherPlayer = currentPlayerId().next();
-		Map<PlayerId, PlayerState> newcompletePlayerState = new EnumMap<>(PlayerId.class);
-
 		Card blindCard = completeCardState.topDeckCard();
 		CardState newcompleteCardState = completeCardState.withoutTopDeckCard();
 		
-		PlayerState newPlayerState = completePlayerState.get(thisPlayer).withAddedCard(blindCard);
-		PlayerState otherPlayerState = completePlayerState.get(otherPlayer);		
-		newcompletePlayerState.put(thisPlayer, newPlayerState);
-		newcompletePlayerState.put(otherPlayer, otherPlayerState);
+		PlayerState newPlayerState = currentPlayerState().withAddedCard(blindCard);
 								
-		return new GameState(gameTickets, newcompleteCardState, currentPlayerId(), newcompletePlayerState, lastPlayer());
+		return next(gameTickets, newcompleteCardState, currentPlayerId(), newPlayerState, null, 0);
 	}
 
 	/**
@@ -326,21 +379,10 @@ public final class GameState extends PublicGameState {
      */
 	public GameState withClaimedRoute(Route route, SortedBag<Card> cards) {
 		
-		PlayerId thisPlayer = currentPlayerId();
-		PlayerId otherPlayer = currentPlayerId().next();
-		
-		PlayerState playerState = completePlayerState.get(thisPlayer);
-		PlayerState  newPlayerState = playerState.withClaimedRoute(route, cards);
-		
-		PlayerState otherPlayerState = completePlayerState.get(otherPlayer);		
-
-		Map<PlayerId, PlayerState> newcompletePlayerState = new EnumMap<>(PlayerId.class);
-		newcompletePlayerState.put(thisPlayer, newPlayerState);
-		newcompletePlayerState.put(otherPlayer, otherPlayerState);
+		PlayerState  newPlayerState = currentPlayerState().withClaimedRoute(route, cards);
+		CardState newcompleteCardState = completeCardState.withMoreDiscardedCards(cards);
 		
-		GameState gameState = new GameState(gameTickets, completeCardState, currentPlayerId(), newcompletePlayerState, lastPlayer());
-				
-		return gameState.withMoreDiscardedCards(cards);	
+		return next(gameTickets, newcompleteCardState, currentPlayerId(), newPlayerState, route, 0);
 	}
 	
 	/**
@@ -365,22 +407,116 @@ public final class GameState extends PublicGameState {
      */
 	public GameState forNextTurn() {
 		
-		if (lastTurnBegins())
-			gameLastPlayer = currentPlayerId();
+		PlayerId newLastPlayer = lastTurnBegins() ? currentPlayerId() : lastPlayer();
+				
+		long newPublicKey = publicKey
+				^ Zobrist.currentPlayer(currentPlayerId()) ^ Zobrist.currentPlayer(currentPlayerId().next())
+				^ Zobrist.lastPlayer(lastPlayer()) ^ Zobrist.lastPlayer(newLastPlayer);
 				
-		return new GameState(gameTickets, completeCardState, currentPlayerId().next(), completePlayerState, lastPlayer());
+		GameState next = new GameState(gameTickets, completeCardState, currentPlayerId().next(), completePlayerState, newLastPlayer, newPublicKey, privateKey);
+		next.inheritRouteOwners(this, null, null);
+		
+		return next;
 	}
-	
+
 	/**
-     * Retourne l'identité du dernier joueur, ou null si elle n'est pas encore connue car le dernier 
-     * tour n'a pas commencé.
-     * Note de @882_f2: "lastPlayer is not the second player to have played but the last player who 
-     * will play in this game of tCHu (meaning the game is over after their turn)."
-     * 
-     * @return
-     *         l'identité du dernier joueur, ou null si elle n'est pas encore connue car le dernier tour n'a pas commencé.
-     */
-	 public PlayerId lastPlayer() {
-		return gameLastPlayer; 
-	 }
+	 * Retourne une clef de hachage (de Zobrist) de 64 bits de la partie publique de l'état, égale à celle que retournerait
+	 * PublicGameState pour les mêmes composantes, mais mise à jour de manière incrémentale à chaque transition.
+	 * 
+	 * @return une clef de hachage de 64 bits de la partie publique de l'état.
+	 */
+	@Override
+	public long publicPositionHash() {
+		return publicKey;
+	}
+
+	/**
+	 * Retourne une clef de hachage (de Zobrist) de 64 bits de l'état complet, c-à-d de sa partie publique ainsi que
+	 * du contenu des mains, des billets et de la défausse, mise à jour de manière incrémentale à chaque transition.
+	 * L'ordre des pioches, inconnu des joueurs, n'influence pas la clef.
+	 * 
+	 * @return une clef de hachage de 64 bits de l'état complet.
+	 */
+	public long positionHash() {
+		return publicKey ^ privateKey;
+	}
+
+	/**
+	 * Retourne l'état suivant le récepteur, dont la pioche des billets, l'état des cartes et éventuellement l'état d'un joueur
+	 * ont été remplacés par ceux donnés, et dont les clefs de hachage sont mises à jour en fonction des seules composantes modifiées.
+	 * 
+	 * @param newTickets
+	 *         nouvelle pioche des billets.
+	 * @param newCardState
+	 *         nouvel état des cartes.
+	 * @param playerId
+	 *         identité du joueur dont l'état change, ou null si aucun ne change.
+	 * @param newPlayerState
+	 *         nouvel état du joueur, ou null si aucun ne change.
+	 * @param claimedRoute
+	 *         route dont le joueur s'est emparé, ou null.
+	 * @param ticketsKey
+	 *         différence (par ou exclusif) entre la clef des billets du joueur avant et après la transition, ou 0 si ses
+	 *         billets ne changent pas.
+	 * @return l'état suivant le récepteur.
+	 */
+	private GameState next(Deck<Ticket> newTickets, CardState newCardState, PlayerId playerId, PlayerState newPlayerState, Route claimedRoute,
+			long ticketsKey) {
+		
+		long newPublicKey = publicKey;
+		long newPrivateKey = privateKey;
+		
+		if (newTickets != gameTickets)
+			newPublicKey ^= Zobrist.ticketsCount(gameTickets.size()) ^ Zobrist.ticketsCount(newTickets.size());
+		
+		if (newCardState != completeCardState) {
+			newPublicKey ^= Zobrist.faceUpCards(completeCardState.packedFaceUpCards()) ^ Zobrist.faceUpCards(newCardState.packedFaceUpCards())
+					^ Zobrist.deckSize(completeCardState.deckSize()) ^ Zobrist.deckSize(newCardState.deckSize())
+					^ Zobrist.discardsSize(completeCardState.discardsSize()) ^ Zobrist.discardsSize(newCardState.discardsSize());
+			
+			if (newCardState.discardedCards() != completeCardState.discardedCards())
+				newPrivateKey ^= Zobrist.discards(PackedCardBag.pack(completeCardState.discardedCards()))
+						^ Zobrist.discards(PackedCardBag.pack(newCardState.discardedCards()));
+		}
+		
+		PlayerState[] newPlayerStates = completePlayerState;
+		if (newPlayerState != null) {
+			PlayerState playerState = playerState(playerId);
+			
+			newPublicKey ^= Zobrist.ticketCount(playerId, playerState.ticketCount()) ^ Zobrist.ticketCount(playerId, newPlayerState.ticketCount())
+					^ Zobrist.cardCount(playerId, playerState.cardCount()) ^ Zobrist.cardCount(playerId, newPlayerState.cardCount());
+			if (claimedRoute != null)
+				newPublicKey ^= Zobrist.route(playerId, claimedRoute);
+			
+			if (newPlayerState.cardBag() != playerState.cardBag())
+				newPrivateKey ^= Zobrist.cards(playerId, PackedCardBag.pack(playerState.cardBag()))
+						^ Zobrist.cards(playerId, PackedCardBag.pack(newPlayerState.cardBag()));
+			newPrivateKey ^= ticketsKey;
+			
+			newPlayerStates = playerStateWith(playerId, newPlayerState);
+		}
+		
+		GameState next = new GameState(newTickets, newCardState, currentPlayerId(), newPlayerStates, lastPlayer(), newPublicKey, newPrivateKey);
+		next.inheritRouteOwners(this, claimedRoute, playerId);
+		
+		return next;
+	}
+
+	/**
+	 * Retourne une copie de l'état des joueurs dans laquelle l'état du joueur donné a été remplacé par celui donné,
+	 * l'état des autres joueurs étant partagé.
+	 * 
+	 * @param playerId
+	 *         identité du joueur dont l'état change.
+	 * @param playerState
+	 *         nouvel état du joueur.
+	 * @return l'état des joueurs, dans lequel celui du joueur donné a été remplacé.
+	 */
+	private PlayerState[] playerStateWith(PlayerId playerId, PlayerState playerState) {
+		
+		PlayerState[] newPlayerState = completePlayerState.clone();
+		newPlayerState[playerId.ordinal()] = playerState;
+		
+		return newPlayerState;
+	}
 }
@@ -0,0 +1,80 @@
+package ch.epfl.tchu.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * Représente les éléments d'un tas, mélangés paresseusement au moyen de l'algorithme de Fisher–Yates :
+ * les éléments d'index inférieur à shuffledCount sont à leur place définitive, les suivants sont ceux
+ * qui restent à placer, dans un ordre quelconque. Une position n'est tirée au sort que lorsqu'elle est consultée.
+ *
+ * Seule la permutation des index est gérée ici ; le stockage des éléments, et donc leur échange, est laissé aux
+ * sous-classes (voir Deck et CardDeck), de sorte que deux tas de même taille mélangés au moyen de générateurs
+ * dans le même état ont leurs éléments dans le même ordre.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+abstract class LazyShuffle {
+
+    private final int size;
+    private final SplittableRandom rng;
+    private int shuffledCount;
+
+    /**
+     * Construit les index des éléments d'un tas de taille donnée, mélangés paresseusement au moyen d'un générateur
+     * qui leur est propre, obtenu en scindant le générateur donné. Si ce dernier est nul, ou s'il y a moins de deux
+     * éléments, les éléments sont considérés comme déjà placés dans leur ordre initial.
+     *
+     * @param size
+     *          nombre d'éléments.
+     * @param rng
+     *          générateur de nombres aléatoires scindable, ou null.
+     */
+    LazyShuffle(int size, SplittableRandom rng) {
+        boolean shuffled = (rng == null || size <= 1);
+        this.size = size;
+        this.rng = shuffled ? null : rng.split();
+        this.shuffledCount = shuffled ? size : 0;
+    }
+
+    /**
+     * Retourne le nombre total d'éléments.
+     *
+     * @return le nombre total d'éléments.
+     */
+    final int size() {
+        return size;
+    }
+
+    /**
+     * Place définitivement les count premiers éléments, si ce n'est pas déjà fait.
+     *
+     * @param count
+     *          nombre d'éléments à placer.
+     */
+    final synchronized void shuffleUpTo(int count) {
+
+        for (; shuffledCount < count; shuffledCount++)
+            swap(shuffledCount, shuffledCount + rng.nextInt(size - shuffledCount));
+    }
+
+    /**
+     * Retourne vrai ssi l'élément d'index donné a été placé au moyen de shuffleUpTo.
+     *
+     * @param index
+     *          index de l'élément.
+     * @return vrai ssi l'élément d'index donné est à sa place définitive.
+     */
+    final boolean isPlaced(int index) {
+        return index < shuffledCount;
+    }
+
+    /**
+     * Échange les éléments d'index donnés.
+     *
+     * @param i
+     *          index du premier élément.
+     * @param j
+     *          index du second élément.
+     */
+    abstract void swap(int i, int j);
+}
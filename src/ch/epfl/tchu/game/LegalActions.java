@@ -0,0 +1,231 @@
+package ch.epfl.tchu.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.SortedBag;
+
+/**
+ * Représente l'ensemble des actions que le joueur courant peut effectuer au début de son tour, calculé en une seule passe.
+ *
+ * Les routes dont le joueur peut s'emparer forment un ensemble de routes (voir RouteSet), chacune étant accompagnée des
+ * ensembles de cartes avec lesquels le joueur peut s'en emparer. Ces derniers sont tirés de tables calculées une fois pour
+ * toutes, route par route, et comparés à la main du joueur sous forme empaquetée (voir PackedCardBag), de sorte qu'aucun
+ * multiensemble n'est construit tant qu'on ne les demande pas.
+ *
+ * Comme dans l'interface graphique, une route est considérée comme libre dès que personne ne s'en est emparé.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+public final class LegalActions {
+
+    private static final int ROUTES_COUNT = ChMap.routes().size();
+    private static final int ROUTE_WORDS = (ROUTES_COUNT + Long.SIZE - 1) / Long.SIZE;
+    private static final int ALL_FACE_UP_SLOTS = (1 << Constants.FACE_UP_CARDS_COUNT) - 1;
+
+    // Longueur et ensembles de cartes permettant de s'emparer de chacune des routes de ChMap, indexés par leur position.
+    private static final int[] ROUTE_LENGTHS = new int[ROUTES_COUNT];
+    private static final long[][] CLAIM_OPTIONS = new long[ROUTES_COUNT][];
+    private static final int MAX_OPTIONS_COUNT;
+
+    static {
+        int optionsCount = 0;
+        for (int i = 0; i < ROUTES_COUNT; i++) {
+            Route route = ChMap.routes().get(i);
+            ROUTE_LENGTHS[i] = route.length();
+            CLAIM_OPTIONS[i] = route.possibleClaimCardsPacked();
+            optionsCount += CLAIM_OPTIONS[i].length;
+        }
+        MAX_OPTIONS_COUNT = optionsCount;
+    }
+
+    private final RouteSet claimableRoutes;
+    private final int[] optionsStart;
+    private final long[] options;
+    private final boolean canDrawTickets;
+    private final boolean canDrawCards;
+
+    private LegalActions(RouteSet claimableRoutes, int[] optionsStart, long[] options, boolean canDrawTickets, boolean canDrawCards) {
+        this.claimableRoutes = claimableRoutes;
+        this.optionsStart = optionsStart;
+        this.options = options;
+        this.canDrawTickets = canDrawTickets;
+        this.canDrawCards = canDrawCards;
+    }
+
+    /**
+     * Retourne les actions que le joueur courant de l'état donné peut effectuer.
+     *
+     * @param state
+     *          état de la partie.
+     * @return les actions que le joueur courant peut effectuer.
+     */
+    public static LegalActions of(GameState state) {
+
+        PlayerState playerState = state.currentPlayerState();
+
+        return of(state.claimedRoutes(), PackedCardBag.pack(playerState.cardBag()), playerState.carCount(),
+                state.canDrawTickets(), state.canDrawCards());
+    }
+
+    /**
+     * Retourne les actions que le joueur courant du moteur donné peut effectuer dans son état actuel.
+     *
+     * @param engine
+     *          moteur de jeu.
+     * @return les actions que le joueur courant peut effectuer.
+     */
+    public static LegalActions of(GameEngine engine) {
+
+        PlayerId currentPlayerId = engine.currentPlayerId();
+        RouteSet claimedRoutes = RouteSet.of();
+        for (PlayerId id : PlayerId.ALL)
+            claimedRoutes = claimedRoutes.union(RouteSet.of(engine.routes(id)));
+
+        return of(claimedRoutes, engine.packedCards(currentPlayerId), engine.carCount(currentPlayerId),
+                engine.canDrawTickets(), engine.canDrawCards());
+    }
+
+    /**
+     * Retourne l'ensemble des routes de ChMap dont peut s'emparer un joueur possédant les cartes (empaquetées) et le nombre
+     * de wagons donnés, les routes de l'ensemble donné étant déjà prises (voir PlayerState.claimableRoutes).
+     */
+    static RouteSet claimableRoutes(RouteSet claimedRoutes, long packedCards, int carCount) {
+        return of(claimedRoutes, packedCards, carCount, false, false).claimableRoutes;
+    }
+
+    private static LegalActions of(RouteSet claimedRoutes, long packedCards, int carCount, boolean canDrawTickets, boolean canDrawCards) {
+
+        long[] claimableRoutes = new long[ROUTE_WORDS];
+        int[] optionsStart = new int[ROUTES_COUNT + 1];
+        long[] options = new long[MAX_OPTIONS_COUNT];
+        int optionsCount = 0;
+
+        for (int i = 0; i < ROUTES_COUNT; i++) {
+            optionsStart[i] = optionsCount;
+
+            if (claimedRoutes.containsId(i) || ROUTE_LENGTHS[i] > carCount)
+                continue;
+
+            for (long option : CLAIM_OPTIONS[i]) {
+                if (PackedCardBag.contains(packedCards, option))
+                    options[optionsCount++] = option;
+            }
+
+            if (optionsCount > optionsStart[i])
+                claimableRoutes[i / Long.SIZE] |= 1L << i;
+        }
+        optionsStart[ROUTES_COUNT] = optionsCount;
+
+        return new LegalActions(RouteSet.ofBits(claimableRoutes), optionsStart, Arrays.copyOf(options, optionsCount), canDrawTickets, canDrawCards);
+    }
+
+    /**
+     * Retourne l'ensemble des routes dont le joueur peut s'emparer.
+     *
+     * @return l'ensemble des routes dont le joueur peut s'emparer.
+     */
+    public RouteSet claimableRoutes() {
+        return claimableRoutes;
+    }
+
+    /**
+     * Retourne vrai ssi le joueur peut s'emparer de la route donnée.
+     *
+     * @param route
+     *          route à tester.
+     * @return vrai ssi la route donnée fait partie de ChMap et que le joueur peut s'en emparer.
+     */
+    public boolean isClaimable(Route route) {
+
+        return claimableRoutes.contains(route);
+    }
+
+    /**
+     * Retourne la liste des ensembles de cartes avec lesquels le joueur peut s'emparer de la route donnée, dans l'ordre
+     * de Route.possibleClaimCards.
+     *
+     * @param route
+     *          route dont le joueur veut s'emparer.
+     * @return la liste des ensembles de cartes avec lesquels le joueur peut s'emparer de la route.
+     * @exception IllegalArgumentException
+     *          si le joueur ne peut pas s'emparer de la route donnée.
+     */
+    public List<SortedBag<Card>> claimCards(Route route) {
+
+        Preconditions.checkArgument(isClaimable(route));
+
+        int index = ChMap.routeIndex(route);
+        List<SortedBag<Card>> claimCards = new ArrayList<SortedBag<Card>>(optionsStart[index + 1] - optionsStart[index]);
+        for (int i = optionsStart[index]; i < optionsStart[index + 1]; i++)
+            claimCards.add(CanonicalCardBags.of(options[i]));
+
+        return claimCards;
+    }
+
+    /**
+     * Retourne les mêmes ensembles de cartes que claimCards, dans le même ordre, sous forme empaquetée (voir PackedCardBag).
+     *
+     * @param route
+     *          route dont le joueur veut s'emparer.
+     * @return les ensembles de cartes empaquetés avec lesquels le joueur peut s'emparer de la route.
+     * @exception IllegalArgumentException
+     *          si le joueur ne peut pas s'emparer de la route donnée.
+     */
+    public long[] packedClaimCards(Route route) {
+
+        Preconditions.checkArgument(isClaimable(route));
+
+        int index = ChMap.routeIndex(route);
+        return Arrays.copyOfRange(options, optionsStart[index], optionsStart[index + 1]);
+    }
+
+    /**
+     * Retourne vrai ssi le joueur peut tirer des billets.
+     *
+     * @return vrai ssi le joueur peut tirer des billets.
+     */
+    public boolean canDrawTickets() {
+        return canDrawTickets;
+    }
+
+    /**
+     * Retourne vrai ssi le joueur peut tirer des cartes.
+     *
+     * @return vrai ssi le joueur peut tirer des cartes.
+     */
+    public boolean canDrawCards() {
+        return canDrawCards;
+    }
+
+    /**
+     * Retourne l'ensemble des emplacements de cartes face visible dans lesquels le joueur peut tirer une carte, sous la forme
+     * d'un ensemble de bits dont le bit d'index i vaut 1 ssi le joueur peut tirer la carte de l'emplacement i.
+     * Tous les emplacements peuvent être tirés dès que le tirage de cartes est autorisé, la pioche étant au besoin
+     * recréée à partir de la défausse avant le tirage (voir GameState.withCardsDeckRecreatedIfNeeded).
+     *
+     * @return l'ensemble des emplacements de cartes face visible dans lesquels le joueur peut tirer une carte.
+     */
+    public int drawableFaceUpSlots() {
+        return canDrawCards ? ALL_FACE_UP_SLOTS : 0;
+    }
+
+    /**
+     * Retourne vrai ssi le joueur peut tirer la carte de l'emplacement donné, qui peut être celui de la pioche
+     * (Constants.DECK_SLOT).
+     *
+     * @param slot
+     *          emplacement de la carte.
+     * @return vrai ssi le joueur peut tirer la carte de l'emplacement donné.
+     * @exception IllegalArgumentException
+     *          si l'emplacement n'est ni celui de la pioche, ni celui d'une carte face visible.
+     */
+    public boolean canDrawCard(int slot) {
+
+        Preconditions.checkArgument(slot == Constants.DECK_SLOT || Constants.FACE_UP_CARD_SLOTS.contains(slot));
+
+        return canDrawCards;
+    }
+}
@@ -0,0 +1,133 @@
+package ch.epfl.tchu.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Représente, de manière persistante, le plus long chemin de chacune des composantes connexes du réseau d'un joueur.
+ *
+ * Chaque composante est décrite par l'une de ses gares, par l'ensemble de ses routes et par son plus long chemin.
+ * Lorsque le joueur s'empare d'une route, seules la ou les composantes qu'elle touche sont fusionnées et leur plus long
+ * chemin recalculé ; les autres sont partagées avec l'état précédent. Le plus long chemin du réseau, c-à-d le plus long
+ * de ceux des composantes, est déterminé à la construction et peut donc être obtenu en temps constant.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+final class LongestTrails {
+
+    // Une gare, les routes et le plus long chemin de chaque composante, indexés par le numéro de la composante.
+    // Attention : les tableaux ne sont jamais copiés ni modifiés après construction !
+    private final Station[] anchors;
+    private final RouteSet[] routes;
+    private final Trail[] trails;
+    private final Trail longest;
+
+    private LongestTrails(Station[] anchors, RouteSet[] routes, Trail[] trails) {
+
+        Trail longest = Trail.longest(List.of());
+        for (Trail trail : trails) {
+            if (trail.length() > longest.length())
+                longest = trail;
+        }
+
+        this.anchors = anchors;
+        this.routes = routes;
+        this.trails = trails;
+        this.longest = longest;
+    }
+
+    /**
+     * Retourne les plus longs chemins des composantes du réseau constitué des routes données, dont la connectivité est
+     * celle de la partition donnée.
+     *
+     * @param routes
+     *          routes du réseau.
+     * @param partition
+     *          partition des gares du réseau.
+     * @return les plus longs chemins des composantes du réseau.
+     */
+    static LongestTrails of(List<Route> routes, StationPartition partition) {
+
+        List<Station> anchors = new ArrayList<Station>();
+        List<List<Route>> componentRoutes = new ArrayList<List<Route>>();
+
+        for (Route route : routes) {
+            int component = componentOf(anchors, partition, route.station1());
+            if (component < 0) {
+                component = anchors.size();
+                anchors.add(route.station1());
+                componentRoutes.add(new ArrayList<Route>());
+            }
+            componentRoutes.get(component).add(route);
+        }
+
+        RouteSet[] routeSets = new RouteSet[anchors.size()];
+        Trail[] trails = new Trail[anchors.size()];
+        for (int c = 0; c < trails.length; c++) {
+            routeSets[c] = RouteSet.of(componentRoutes.get(c));
+            trails[c] = Trail.longest(componentRoutes.get(c));
+        }
+
+        return new LongestTrails(anchors.toArray(new Station[0]), routeSets, trails);
+    }
+
+    private static int componentOf(List<Station> anchors, StationPartition partition, Station station) {
+
+        for (int c = 0; c < anchors.size(); c++) {
+            if (partition.connected(anchors.get(c), station))
+                return c;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Retourne les plus longs chemins des composantes du réseau auquel la route donnée a été ajoutée, la partition donnée
+     * étant celle de ce nouveau réseau. Seul le plus long chemin de la composante contenant la route est recalculé.
+     *
+     * @param route
+     *          route ajoutée au réseau.
+     * @param partition
+     *          partition des gares du réseau, route donnée comprise.
+     * @return les plus longs chemins des composantes du nouveau réseau.
+     */
+    LongestTrails withClaimedRoute(Route route, StationPartition partition) {
+
+        // Les composantes contenant l'une ou l'autre des gares de la route sont celles qui, dans la nouvelle partition,
+        // sont connectées à sa première gare ; elles sont fusionnées avec la route, et les autres sont conservées.
+        int[] kept = new int[anchors.length];
+        int keptCount = 0;
+        RouteSet mergedRoutes = RouteSet.of().with(route);
+
+        for (int c = 0; c < anchors.length; c++) {
+            if (partition.connected(anchors[c], route.station1()))
+                mergedRoutes = mergedRoutes.union(routes[c]);
+            else
+                kept[keptCount++] = c;
+        }
+
+        Station[] newAnchors = new Station[keptCount + 1];
+        RouteSet[] newRoutes = new RouteSet[keptCount + 1];
+        Trail[] newTrails = new Trail[keptCount + 1];
+        for (int i = 0; i < keptCount; i++) {
+            newAnchors[i] = anchors[kept[i]];
+            newRoutes[i] = routes[kept[i]];
+            newTrails[i] = trails[kept[i]];
+        }
+
+        newAnchors[keptCount] = route.station1();
+        newRoutes[keptCount] = mergedRoutes;
+        newTrails[keptCount] = Trail.longest(mergedRoutes.toList());
+
+        return new LongestTrails(newAnchors, newRoutes, newTrails);
+    }
+
+    /**
+     * Retourne le plus long chemin du réseau (voir Trail.longest).
+     *
+     * @return le plus long chemin du réseau.
+     */
+    Trail longest() {
+        return longest;
+    }
+}
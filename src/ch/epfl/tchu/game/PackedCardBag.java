@@ -0,0 +1,254 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.SortedBag;
+
+/**
+ * Offre des méthodes permettant de manipuler des multiensembles de cartes empaquetés dans une valeur de type long.
+ *
+ * Chacun des 9 types de cartes occupe une « voie » de 7 bits, à la position 7 × ordinal : les 6 bits de poids faible
+ * contiennent la multiplicité (au plus MAX_COUNT), et le bit de poids fort est toujours nul. Ce bit de garde permet de réaliser
+ * l'union, la différence et le test d'inclusion sur toutes les voies à la fois, au moyen de quelques opérations arithmétiques.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+public final class PackedCardBag {
+
+    /**
+     * Multiensemble vide.
+     */
+    public static final long EMPTY = 0L;
+
+    /**
+     * Multiplicité maximale d'un type de carte dans un multiensemble empaqueté.
+     */
+    public static final int MAX_COUNT = 63;
+
+    private static final int LANE_BITS = 7;
+    private static final long LANE_MASK = (1L << LANE_BITS) - 1;
+
+    // Le bit de poids faible, resp. le bit de garde, de chacune des voies.
+    private static final long LOW_BITS = lowBits();
+    private static final long GUARD_BITS = LOW_BITS << (LANE_BITS - 1);
+
+    private static final long LOCOMOTIVE_LANE = LANE_MASK << shift(Card.LOCOMOTIVE);
+
+    /**
+     * Empêche l'instanciation de la classe.
+     */
+    private PackedCardBag() {}
+
+    private static long lowBits() {
+
+        long bits = 0;
+        for (int i = 0; i < Card.COUNT; i++)
+            bits |= 1L << (LANE_BITS * i);
+
+        return bits;
+    }
+
+    private static int shift(Card card) {
+        return LANE_BITS * card.ordinal();
+    }
+
+    /**
+     * Retourne le multiensemble empaqueté contenant une seule carte.
+     *
+     * @param card
+     *          l'unique carte du multiensemble.
+     * @return le multiensemble empaqueté ne contenant que la carte donnée.
+     */
+    public static long of(Card card) {
+        return 1L << shift(card);
+    }
+
+    /**
+     * Retourne le multiensemble empaqueté contenant n occurrences de la carte donnée.
+     *
+     * @param n
+     *          multiplicité de la carte.
+     * @param card
+     *          carte du multiensemble.
+     * @return le multiensemble empaqueté contenant n occurrences de la carte donnée.
+     * @exception IllegalArgumentException
+     *          si n n'est pas compris entre 0 et MAX_COUNT (inclus).
+     */
+    public static long of(int n, Card card) {
+
+        Preconditions.checkArgument(0 <= n && n <= MAX_COUNT);
+
+        return (long) n << shift(card);
+    }
+
+    /**
+     * Retourne la version empaquetée du multiensemble de cartes donné.
+     *
+     * @param cards
+     *          multiensemble de cartes.
+     * @return la version empaquetée du multiensemble donné.
+     * @exception IllegalArgumentException
+     *          si l'une des cartes apparaît plus de MAX_COUNT fois.
+     */
+    public static long pack(SortedBag<Card> cards) {
+
+        long bag = EMPTY;
+        for (Card card : cards.toSet())
+            bag |= of(cards.countOf(card), card);
+
+        return bag;
+    }
+
+    /**
+     * Retourne la version empaquetée du multiensemble de cartes donné.
+     *
+     * @param cards
+     *          multiensemble de cartes.
+     * @return la version empaquetée du multiensemble donné.
+     * @exception IllegalArgumentException
+     *          si l'une des cartes apparaît plus de MAX_COUNT fois.
+     */
+    public static long pack(CardBag cards) {
+
+        long bag = EMPTY;
+        for (Card card : Card.ALL)
+            bag |= of(cards.countOf(card), card);
+
+        return bag;
+    }
+
+    /**
+     * Retourne le multiensemble trié correspondant au multiensemble empaqueté donné.
+     *
+     * @param bag
+     *          multiensemble empaqueté.
+     * @return le multiensemble trié contenant les mêmes cartes que le multiensemble empaqueté.
+     */
+    public static SortedBag<Card> unpack(long bag) {
+
+        if (bag == EMPTY)
+            return SortedBag.of();
+
+        SortedBag.Builder<Card> builder = new SortedBag.Builder<Card>();
+        for (Card card : Card.ALL)
+            builder.add(countOf(bag, card), card);
+
+        return builder.build();
+    }
+
+    /**
+     * Retourne le multiensemble de cartes correspondant au multiensemble empaqueté donné, sous la forme de ses multiplicités.
+     *
+     * @param bag
+     *          multiensemble empaqueté.
+     * @return le multiensemble contenant les mêmes cartes que le multiensemble empaqueté.
+     */
+    static CardBag toCardBag(long bag) {
+
+        if (bag == EMPTY)
+            return CardBag.of();
+
+        CardBag.Builder builder = new CardBag.Builder();
+        for (Card card : Card.ALL)
+            builder.add(countOf(bag, card), card);
+
+        return builder.build();
+    }
+
+    /**
+     * Retourne la multiplicité de la carte donnée dans le multiensemble empaqueté.
+     *
+     * @param bag
+     *          multiensemble empaqueté.
+     * @param card
+     *          carte dont la multiplicité doit être retournée.
+     * @return la multiplicité de la carte donnée.
+     */
+    public static int countOf(long bag, Card card) {
+        return (int) ((bag >>> shift(card)) & LANE_MASK);
+    }
+
+    /**
+     * Retourne le nombre de cartes du multiensemble empaqueté.
+     *
+     * @param bag
+     *          multiensemble empaqueté.
+     * @return le nombre de cartes du multiensemble empaqueté.
+     */
+    public static int size(long bag) {
+
+        int size = 0;
+        for (; bag != 0; bag >>>= LANE_BITS)
+            size += (int) (bag & LANE_MASK);
+
+        return size;
+    }
+
+    /**
+     * Retourne l'union des deux multiensembles empaquetés.
+     *
+     * @param bag1
+     *          premier multiensemble empaqueté.
+     * @param bag2
+     *          second multiensemble empaqueté.
+     * @return l'union des deux multiensembles.
+     * @exception IllegalArgumentException
+     *          si l'une des cartes apparaîtrait plus de MAX_COUNT fois dans l'union.
+     */
+    public static long union(long bag1, long bag2) {
+
+        long sum = bag1 + bag2;
+        Preconditions.checkArgument((sum & GUARD_BITS) == 0);
+
+        return sum;
+    }
+
+    /**
+     * Retourne la différence entre les deux multiensembles empaquetés,
+     * les multiplicités qui deviendraient négatives étant ramenées à zéro.
+     *
+     * @param bag1
+     *          multiensemble empaqueté duquel retirer les cartes.
+     * @param bag2
+     *          multiensemble empaqueté des cartes à retirer.
+     * @return la différence entre bag1 et bag2.
+     */
+    public static long difference(long bag1, long bag2) {
+
+        // Dans chaque voie, le bit de garde reste à 1 ssi la multiplicité de bag1 est au moins celle de bag2.
+        long diff = (bag1 | GUARD_BITS) - bag2;
+        long keep = ((diff & GUARD_BITS) >>> (LANE_BITS - 1)) * MAX_COUNT;
+
+        return diff & keep;
+    }
+
+    /**
+     * Retourne vrai ssi le second multiensemble empaqueté est inclus dans le premier.
+     *
+     * @param bag
+     *          multiensemble empaqueté.
+     * @param that
+     *          multiensemble empaqueté dont on doit déterminer s'il est un sous-ensemble de bag.
+     * @return vrai ssi that est inclus dans bag.
+     */
+    public static boolean contains(long bag, long that) {
+        return (((bag | GUARD_BITS) - that) & GUARD_BITS) == GUARD_BITS;
+    }
+
+    /**
+     * Retourne le nombre de cartes de drawnCards qui correspondent aux cartes claimCards posées pour un tunnel,
+     * c-à-d le nombre de locomotives tirées plus le nombre de wagons tirés d'une couleur présente dans claimCards.
+     *
+     * @param claimCards
+     *          multiensemble empaqueté des cartes posées.
+     * @param drawnCards
+     *          multiensemble empaqueté des cartes tirées.
+     * @return le nombre de cartes tirées correspondant aux cartes posées.
+     */
+    static int matchingCount(long claimCards, long drawnCards) {
+
+        // Dans chaque voie, le bit de garde reste à 1 ssi la multiplicité de claimCards est non nulle.
+        long nonEmptyLanes = (((claimCards | GUARD_BITS) - LOW_BITS) & GUARD_BITS) >>> (LANE_BITS - 1);
+
+        return size(drawnCards & (nonEmptyLanes * LANE_MASK | LOCOMOTIVE_LANE));
+    }
+}
@@ -0,0 +1,124 @@
+package ch.epfl.tchu.game;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import ch.epfl.tchu.Preconditions;
+
+/**
+ * Offre des méthodes permettant de manipuler les 5 cartes face visible empaquetées dans une valeur de type int.
+ *
+ * La carte de l'emplacement d'index i occupe les 4 bits situés à la position 4 × i, qui contiennent son ordinal ;
+ * les 12 bits de poids fort sont toujours nuls. Remplacer la carte d'un emplacement se fait donc en une seule opération,
+ * sans copier les autres.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+public final class PackedFaceUpCards {
+
+    private static final int SLOT_BITS = 4;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+
+    /**
+     * Empêche l'instanciation de la classe.
+     */
+    private PackedFaceUpCards() {}
+
+    /**
+     * Retourne vrai ssi la valeur donnée représente 5 cartes face visible empaquetées valides.
+     *
+     * @param packedCards
+     *          valeur à tester.
+     * @return vrai ssi chacun des 5 emplacements contient l'ordinal d'une carte, et les bits restants sont nuls.
+     */
+    public static boolean isValid(int packedCards) {
+
+        if ((packedCards >>> (SLOT_BITS * Constants.FACE_UP_CARDS_COUNT)) != 0)
+            return false;
+
+        for (int slot = 0; slot < Constants.FACE_UP_CARDS_COUNT; slot++) {
+            if (((packedCards >>> (SLOT_BITS * slot)) & SLOT_MASK) >= Card.COUNT)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Retourne la version empaquetée de la liste de cartes face visible donnée.
+     *
+     * @param cards
+     *          cartes face visible.
+     * @return la version empaquetée des cartes données.
+     * @exception IllegalArgumentException
+     *          si la liste ne contient pas exactement 5 cartes.
+     */
+    public static int pack(List<Card> cards) {
+
+        Preconditions.checkArgument(cards.size() == Constants.FACE_UP_CARDS_COUNT);
+
+        int packedCards = 0;
+        for (int slot = 0; slot < Constants.FACE_UP_CARDS_COUNT; slot++)
+            packedCards |= cards.get(slot).ordinal() << (SLOT_BITS * slot);
+
+        return packedCards;
+    }
+
+    /**
+     * Retourne la liste (non modifiable) des cartes face visible empaquetées.
+     *
+     * @param packedCards
+     *          cartes face visible empaquetées.
+     * @return la liste des 5 cartes face visible.
+     */
+    public static List<Card> unpack(int packedCards) {
+
+        List<Card> cards = new ArrayList<Card>(Constants.FACE_UP_CARDS_COUNT);
+        for (int slot = 0; slot < Constants.FACE_UP_CARDS_COUNT; slot++)
+            cards.add(get(packedCards, slot));
+
+        return Collections.unmodifiableList(cards);
+    }
+
+    /**
+     * Retourne la carte de l'emplacement d'index donné.
+     *
+     * @param packedCards
+     *          cartes face visible empaquetées.
+     * @param slot
+     *          index de l'emplacement.
+     * @return la carte de l'emplacement d'index donné.
+     * @exception IndexOutOfBoundsException
+     *          si l'index n'est pas compris entre 0 (inclus) et 5 (exclus).
+     */
+    public static Card get(int packedCards, int slot) {
+
+        Objects.checkIndex(slot, Constants.FACE_UP_CARDS_COUNT);
+
+        return Card.ALL.get((packedCards >>> (SLOT_BITS * slot)) & SLOT_MASK);
+    }
+
+    /**
+     * Retourne les cartes face visible empaquetées données, dans lesquelles la carte de l'emplacement d'index donné
+     * a été remplacée par la carte donnée.
+     *
+     * @param packedCards
+     *          cartes face visible empaquetées.
+     * @param slot
+     *          index de l'emplacement.
+     * @param card
+     *          nouvelle carte de l'emplacement.
+     * @return les cartes empaquetées, avec la carte donnée à l'emplacement d'index donné.
+     * @exception IndexOutOfBoundsException
+     *          si l'index n'est pas compris entre 0 (inclus) et 5 (exclus).
+     */
+    public static int with(int packedCards, int slot, Card card) {
+
+        Objects.checkIndex(slot, Constants.FACE_UP_CARDS_COUNT);
+
+        int shift = SLOT_BITS * slot;
+        return (packedCards & ~(SLOT_MASK << shift)) | (card.ordinal() << shift);
+    }
+}
@@ -0,0 +1,405 @@
+package ch.epfl.tchu.game;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.SortedBag;
+
+/**
+ * Représente l'état complet d'une partie de tCHu, encodé de manière canonique dans un tableau de valeurs de type long.
+ *
+ * L'encodage est constitué, dans l'ordre :
+ * <ul>
+ * <li>d'un en-tête contenant les 5 cartes face visible (voir PackedFaceUpCards), le joueur courant, le dernier joueur
+ * et la taille des deux pioches,</li>
+ * <li>de la défausse et de la main de chacun des joueurs, empaquetées (voir PackedCardBag),</li>
+ * <li>pour chaque joueur, de l'ensemble de ses billets et de l'ensemble de ses routes, sous la forme d'ensembles de bits
+ * indexés par la position des billets, resp. des routes, dans ChMap,</li>
+ * <li>de la pioche des billets (6 bits par billet) puis de celle des cartes (4 bits par carte), du sommet vers le fond.</li>
+ * </ul>
+ * Deux états égaux ont donc le même encodage, qui peut être comparé et haché directement. Les routes d'un joueur
+ * étant encodées sous la forme d'un ensemble, leur ordre de prise n'est pas conservé. Seuls les billets et routes de ChMap
+ * peuvent être encodés, et chaque pioche doit contenir moins de 128 éléments.
+ *
+ * Les méthodes d'accès lisent chaque composante directement dans l'encodage, alors que toGameState copie l'ensemble
+ * des composantes dans un nouvel état.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+public final class PackedGameState {
+
+    private static final int TICKET_BITS = Integer.SIZE - Integer.numberOfLeadingZeros(ChMap.tickets().size() - 1);
+    private static final int CARD_BITS = 4;
+    private static final int TICKET_WORDS = wordsFor(ChMap.tickets().size());
+    private static final int ROUTE_WORDS = wordsFor(ChMap.routes().size());
+
+    // Position des champs de l'en-tête.
+    private static final int FACE_UP_CARDS_BITS = 20;
+    private static final int PLAYER_SHIFT = FACE_UP_CARDS_BITS;
+    private static final int LAST_PLAYER_SHIFT = PLAYER_SHIFT + 2;
+    private static final int TICKETS_COUNT_SHIFT = LAST_PLAYER_SHIFT + 2;
+    private static final int DECK_SIZE_SHIFT = TICKETS_COUNT_SHIFT + 7;
+    private static final int SIZE_BITS = 7;
+
+    private static final int DISCARDS_WORD = 1;
+    private static final int CARDS_WORD = DISCARDS_WORD + 1;
+    private static final int TICKETS_WORD = CARDS_WORD + PlayerId.COUNT;
+    private static final int ROUTES_WORD = TICKETS_WORD + PlayerId.COUNT * TICKET_WORDS;
+    private static final int DECKS_WORD = ROUTES_WORD + PlayerId.COUNT * ROUTE_WORDS;
+
+    // Positions, dans ChMap, de chacun des billets ; les billets pays à pays y figurent deux fois.
+    private static final Map<Ticket, int[]> TICKET_POSITIONS = ticketPositions();
+
+    private final long[] words;
+
+    private PackedGameState(long[] words) {
+        this.words = words;
+    }
+
+    private static int wordsFor(int bits) {
+        return (bits + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    private static Map<Ticket, int[]> ticketPositions() {
+
+        Map<Ticket, int[]> positions = new IdentityHashMap<Ticket, int[]>();
+        List<Ticket> tickets = ChMap.tickets();
+        for (int i = 0; i < tickets.size(); i++) {
+            int[] previous = positions.getOrDefault(tickets.get(i), new int[0]);
+            int[] current = Arrays.copyOf(previous, previous.length + 1);
+            current[previous.length] = i;
+            positions.put(tickets.get(i), current);
+        }
+
+        return positions;
+    }
+
+    /**
+     * Retourne l'encodage de l'état de la partie donné.
+     *
+     * @param state
+     *          état de la partie.
+     * @return l'encodage de l'état de la partie donné.
+     * @exception IllegalArgumentException
+     *          si l'état contient une route ou un billet ne faisant pas partie de ChMap, ou si l'une de ses pioches
+     *          contient trop d'éléments pour que sa taille tienne dans les 7 bits qui lui sont réservés.
+     */
+    public static PackedGameState of(GameState state) {
+
+        CardState cardState = state.completeCardState();
+        CardDeck cardDeck = cardState.deck();
+        List<Ticket> ticketDeck = state.ticketDeck().toList();
+
+        Preconditions.checkArgument(ticketDeck.size() < 1 << SIZE_BITS);
+        Preconditions.checkArgument(cardDeck.size() < 1 << SIZE_BITS);
+
+        long[] words = new long[DECKS_WORD + wordsFor(TICKET_BITS * ticketDeck.size()) + wordsFor(CARD_BITS * cardDeck.size())];
+
+        PlayerId lastPlayer = state.lastPlayer();
+        words[0] = cardState.packedFaceUpCards()
+                | (long) state.currentPlayerId().ordinal() << PLAYER_SHIFT
+                | (long) ((lastPlayer == null) ? 0 : lastPlayer.ordinal() + 1) << LAST_PLAYER_SHIFT
+                | (long) ticketDeck.size() << TICKETS_COUNT_SHIFT
+                | (long) cardDeck.size() << DECK_SIZE_SHIFT;
+        words[DISCARDS_WORD] = PackedCardBag.pack(cardState.discardedCards());
+
+        for (PlayerId id : PlayerId.ALL) {
+            PlayerState playerState = state.playerState(id);
+            int i = id.ordinal();
+
+            words[CARDS_WORD + i] = PackedCardBag.pack(playerState.cardBag());
+
+            int[] ticketPositions = positionsOf(playerState.tickets().toList());
+            for (int position : ticketPositions)
+                words[TICKETS_WORD + i * TICKET_WORDS + position / Long.SIZE] |= 1L << position;
+
+            for (Route route : playerState.routes()) {
+                int index = ChMap.routeIndex(route);
+                Preconditions.checkArgument(index >= 0);
+                words[ROUTES_WORD + i * ROUTE_WORDS + index / Long.SIZE] |= 1L << index;
+            }
+        }
+
+        int[] ticketPositions = positionsOf(ticketDeck);
+        int bit = DECKS_WORD * Long.SIZE;
+        for (int position : ticketPositions) {
+            write(words, bit, TICKET_BITS, position);
+            bit += TICKET_BITS;
+        }
+
+        bit = (DECKS_WORD + wordsFor(TICKET_BITS * ticketDeck.size())) * Long.SIZE;
+        for (int i = 0; i < cardDeck.size(); i++) {
+            write(words, bit, CARD_BITS, cardDeck.get(i).ordinal());
+            bit += CARD_BITS;
+        }
+
+        return new PackedGameState(words);
+    }
+
+    /**
+     * Retourne l'état encodé au moyen du tableau donné, qui est copié.
+     *
+     * @param words
+     *          encodage, tel que retourné par toLongArray.
+     * @return l'état encodé au moyen du tableau donné.
+     * @exception IllegalArgumentException
+     *          si la taille du tableau ne correspond pas à celle de l'encodage décrit par son en-tête.
+     */
+    public static PackedGameState of(long[] words) {
+
+        // L'encodage d'un état dont les deux pioches sont vides se termine juste avant DECKS_WORD.
+        Preconditions.checkArgument(words.length >= DECKS_WORD && words.length == expectedLength(words[0]));
+
+        return new PackedGameState(words.clone());
+    }
+
+    /**
+     * Retourne l'état encodé dans les octets restants du tampon donné, tels qu'écrits par toByteBuffer.
+     * La position du tampon est avancée jusqu'à sa limite.
+     *
+     * @param buffer
+     *          tampon contenant l'encodage.
+     * @return l'état encodé dans le tampon donné.
+     * @exception IllegalArgumentException
+     *          si le nombre d'octets restants ne correspond pas à celui de l'encodage.
+     */
+    public static PackedGameState of(ByteBuffer buffer) {
+
+        Preconditions.checkArgument(buffer.remaining() % Long.BYTES == 0);
+
+        long[] words = new long[buffer.remaining() / Long.BYTES];
+        buffer.asLongBuffer().get(words);
+        buffer.position(buffer.limit());
+
+        return of(words);
+    }
+
+    private static int expectedLength(long header) {
+
+        int ticketsCount = (int) (header >>> TICKETS_COUNT_SHIFT) & ((1 << SIZE_BITS) - 1);
+        int deckSize = (int) (header >>> DECK_SIZE_SHIFT) & ((1 << SIZE_BITS) - 1);
+
+        return DECKS_WORD + wordsFor(TICKET_BITS * ticketsCount) + wordsFor(CARD_BITS * deckSize);
+    }
+
+    private static int[] positionsOf(List<Ticket> tickets) {
+
+        // Chaque occurrence d'un billet reçoit la première de ses positions pas encore utilisée.
+        Map<Ticket, Integer> used = new IdentityHashMap<Ticket, Integer>();
+        int[] positions = new int[tickets.size()];
+        for (int i = 0; i < positions.length; i++) {
+            int[] candidates = TICKET_POSITIONS.get(tickets.get(i));
+            int occurrence = used.getOrDefault(tickets.get(i), 0);
+            Preconditions.checkArgument(candidates != null && occurrence < candidates.length);
+
+            positions[i] = candidates[occurrence];
+            used.put(tickets.get(i), occurrence + 1);
+        }
+
+        return positions;
+    }
+
+    private static void write(long[] words, int bit, int bits, int value) {
+
+        words[bit / Long.SIZE] |= (long) value << (bit % Long.SIZE);
+        if (bit % Long.SIZE + bits > Long.SIZE)
+            words[bit / Long.SIZE + 1] |= (long) value >>> (Long.SIZE - bit % Long.SIZE);
+    }
+
+    private int read(int bit, int bits) {
+
+        long value = words[bit / Long.SIZE] >>> (bit % Long.SIZE);
+        if (bit % Long.SIZE + bits > Long.SIZE)
+            value |= words[bit / Long.SIZE + 1] << (Long.SIZE - bit % Long.SIZE);
+
+        return (int) value & ((1 << bits) - 1);
+    }
+
+    /**
+     * Retourne l'état de la partie encodé. Le décodage n'est pas une vue : les pioches, les mains, les billets et les
+     * routes sont copiés dans de nouvelles instances, en temps linéaire en la taille de l'encodage. Les méthodes d'accès
+     * ci-dessous lisent en revanche chaque composante directement dans l'encodage.
+     *
+     * @return l'état de la partie encodé.
+     */
+    public GameState toGameState() {
+
+        List<Ticket> allTickets = ChMap.tickets();
+
+        List<Ticket> tickets = new ArrayList<Ticket>(ticketsCount());
+        int bit = DECKS_WORD * Long.SIZE;
+        for (int i = 0; i < ticketsCount(); i++, bit += TICKET_BITS)
+            tickets.add(allTickets.get(read(bit, TICKET_BITS)));
+
+        byte[] cards = new byte[deckSize()];
+        bit = (DECKS_WORD + wordsFor(TICKET_BITS * ticketsCount())) * Long.SIZE;
+        for (int i = 0; i < cards.length; i++, bit += CARD_BITS)
+            cards[i] = (byte) read(bit, CARD_BITS);
+
+        CardState cardState = CardState.of(packedFaceUpCards(), CardDeck.ofOrdinals(cards), PackedCardBag.toCardBag(packedDiscards()));
+
+        PlayerState[] playerState = new PlayerState[PlayerId.COUNT];
+        for (PlayerId id : PlayerId.ALL)
+            playerState[id.ordinal()] = new PlayerState(tickets(id), CanonicalCardBags.of(packedCards(id)), routes(id));
+
+        return GameState.of(Deck.ofOrdered(tickets), cardState, currentPlayerId(), playerState, lastPlayer());
+    }
+
+    /**
+     * Retourne un moteur dont l'état initial est l'état de la partie encodé.
+     *
+     * @return un moteur dont l'état initial est l'état de la partie encodé.
+     */
+    public GameEngine toGameEngine() {
+        return new GameEngine(toGameState());
+    }
+
+    /**
+     * Retourne une copie du tableau contenant l'encodage.
+     *
+     * @return une copie du tableau contenant l'encodage.
+     */
+    public long[] toLongArray() {
+        return words.clone();
+    }
+
+    /**
+     * Retourne un nouveau tampon contenant l'encodage, prêt à être lu.
+     *
+     * @return un nouveau tampon contenant l'encodage.
+     */
+    public ByteBuffer toByteBuffer() {
+
+        ByteBuffer buffer = ByteBuffer.allocate(words.length * Long.BYTES);
+        buffer.asLongBuffer().put(words);
+
+        return buffer;
+    }
+
+    /**
+     * Retourne la taille de l'encodage, en octets.
+     *
+     * @return la taille de l'encodage, en octets.
+     */
+    public int sizeInBytes() {
+        return words.length * Long.BYTES;
+    }
+
+    /**
+     * Retourne l'identité du joueur courant.
+     *
+     * @return l'identité du joueur courant.
+     */
+    public PlayerId currentPlayerId() {
+        return PlayerId.ALL.get((int) (words[0] >>> PLAYER_SHIFT) & 0b11);
+    }
+
+    /**
+     * Retourne l'identité du dernier joueur, ou null si elle n'est pas encore connue.
+     *
+     * @return l'identité du dernier joueur, ou null.
+     */
+    public PlayerId lastPlayer() {
+
+        int lastPlayer = (int) (words[0] >>> LAST_PLAYER_SHIFT) & 0b11;
+        return (lastPlayer == 0) ? null : PlayerId.ALL.get(lastPlayer - 1);
+    }
+
+    /**
+     * Retourne la taille de la pioche des billets.
+     *
+     * @return la taille de la pioche des billets.
+     */
+    public int ticketsCount() {
+        return (int) (words[0] >>> TICKETS_COUNT_SHIFT) & ((1 << SIZE_BITS) - 1);
+    }
+
+    /**
+     * Retourne la taille de la pioche des cartes.
+     *
+     * @return la taille de la pioche des cartes.
+     */
+    public int deckSize() {
+        return (int) (words[0] >>> DECK_SIZE_SHIFT) & ((1 << SIZE_BITS) - 1);
+    }
+
+    /**
+     * Retourne les 5 cartes face visible, empaquetées au moyen de PackedFaceUpCards.
+     *
+     * @return les 5 cartes face visible, empaquetées.
+     */
+    public int packedFaceUpCards() {
+        return (int) words[0] & ((1 << FACE_UP_CARDS_BITS) - 1);
+    }
+
+    /**
+     * Retourne la défausse, empaquetée au moyen de PackedCardBag.
+     *
+     * @return la défausse, empaquetée.
+     */
+    public long packedDiscards() {
+        return words[DISCARDS_WORD];
+    }
+
+    /**
+     * Retourne les cartes du joueur donné, empaquetées au moyen de PackedCardBag.
+     *
+     * @param playerId
+     *          identité du joueur.
+     * @return les cartes du joueur donné, empaquetées.
+     */
+    public long packedCards(PlayerId playerId) {
+        return words[CARDS_WORD + playerId.ordinal()];
+    }
+
+    /**
+     * Retourne les billets du joueur donné.
+     *
+     * @param playerId
+     *          identité du joueur.
+     * @return les billets du joueur donné.
+     */
+    public SortedBag<Ticket> tickets(PlayerId playerId) {
+
+        SortedBag.Builder<Ticket> builder = new SortedBag.Builder<Ticket>();
+        for (int w = 0; w < TICKET_WORDS; w++) {
+            for (long bits = words[TICKETS_WORD + playerId.ordinal() * TICKET_WORDS + w]; bits != 0; bits &= bits - 1)
+                builder.add(ChMap.tickets().get(w * Long.SIZE + Long.numberOfTrailingZeros(bits)));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Retourne les routes du joueur donné, dans l'ordre de ChMap.
+     *
+     * @param playerId
+     *          identité du joueur.
+     * @return les routes du joueur donné.
+     */
+    public List<Route> routes(PlayerId playerId) {
+
+        List<Route> routes = new ArrayList<Route>();
+        for (int w = 0; w < ROUTE_WORDS; w++) {
+            for (long bits = words[ROUTES_WORD + playerId.ordinal() * ROUTE_WORDS + w]; bits != 0; bits &= bits - 1)
+                routes.add(ChMap.routes().get(w * Long.SIZE + Long.numberOfTrailingZeros(bits)));
+        }
+
+        return routes;
+    }
+
+    @Override
+    public boolean equals(Object that) {
+        return (that instanceof PackedGameState) && Arrays.equals(words, ((PackedGameState) that).words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+}
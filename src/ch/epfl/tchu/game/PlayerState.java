@@ -1,8 +1,8 @@
 package ch.epfl.tchu.game;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Collectors;
 import ch.epfl.tchu.Preconditions;
 import ch.epfl.tchu.SortedBag;
 
@@ -13,8 +13,23 @@ import ch.epfl.tchu.SortedBag;
  */
 public final class PlayerState extends PublicPlayerState {
 
+    private static final int UNKNOWN_POINTS = Integer.MIN_VALUE;
+
     private final SortedBag<Ticket> tickets;
-    private final SortedBag<Card> cards;
+    private final CardBag cards;
+    
+    // Vue SortedBag des cartes, calculée au premier appel de cards() seulement.
+    private SortedBag<Card> sortedCards;
+    
+    // Connectivité des gares du joueur, étendue d'une jonction à chaque route prise.
+    private final StationPartition partition;
+    
+    // Points des billets, calculés au premier appel de ticketPoints() si l'état dont celui-ci dérive ne les connaissait pas.
+    private int ticketPoints;
+    
+    // Plus longs chemins des composantes du réseau, calculés au premier appel de longestTrail(), puis mis à jour
+    // à chaque route prise par les états qui en dérivent.
+    private LongestTrails longestTrails;
     
     /**
      * Construit l'état d'un joueur possédant les billets, cartes et routes donnés.
@@ -28,10 +43,30 @@ public final class PlayerState extends PublicPlayerState {
      */
     public PlayerState(SortedBag<Ticket> tickets, SortedBag<Card> cards, List<Route> routes) {
         
-    	super(tickets.size(), cards.size(), routes);  // crée NullPointerException si un argument est null.
+        this(tickets, CardBag.of(cards), routes, partitionOf(routes), UNKNOWN_POINTS, null);  // crée NullPointerException si un argument est null.
+        
+        this.sortedCards = cards;
+    }
+    
+    private PlayerState(SortedBag<Ticket> tickets, CardBag cards, List<Route> routes, StationPartition partition, int ticketPoints,
+            LongestTrails longestTrails) {
+        
+        super(tickets.size(), cards.size(), routes);
         
         this.tickets = tickets;
-        this.cards = cards;        
+        this.cards = cards;
+        this.partition = partition;
+        this.ticketPoints = ticketPoints;
+        this.longestTrails = longestTrails;
+    }
+    
+    private static StationPartition partitionOf(List<Route> routes) {
+        
+        StationPartition partition = StationPartition.EMPTY;
+        for (Route route: routes)
+            partition = partition.withConnected(route.station1(), route.station2());
+        
+        return partition;
     }
     
 	/**
@@ -64,7 +99,12 @@ public final class PlayerState extends PublicPlayerState {
      * @return un état identique au récepteur, si ce n'est que le joueur possède en plus les billets donnés.
      */
     public PlayerState withAddedTickets(SortedBag<Ticket> newTickets) {
-        return new PlayerState(tickets().union(newTickets), cards(), routes());
+        
+        int newTicketPoints = ticketPoints;
+        if (newTicketPoints != UNKNOWN_POINTS)
+            newTicketPoints += pointsOf(newTickets);
+        
+        return new PlayerState(tickets().union(newTickets), cards, routes(), partition, newTicketPoints, longestTrails);
     }
     
     /**
@@ -73,6 +113,19 @@ public final class PlayerState extends PublicPlayerState {
      * @return les cartes wagon/locomotive du joueur.
      */
     public SortedBag<Card> cards() {
+        
+        if (sortedCards == null)
+            sortedCards = cards.toSortedBag();
+        
+        return sortedCards;
+    }
+    
+    /**
+     * Retourne les cartes wagon/locomotive du joueur, sous la forme de leurs multiplicités.
+     * 
+     * @return les cartes wagon/locomotive du joueur.
+     */
+    CardBag cardBag() {
         return cards;
     }
     
@@ -84,7 +137,7 @@ public final class PlayerState extends PublicPlayerState {
      * @return un état identique au récepteur, si ce n'est que le joueur possède en plus la carte donnée.
      */
     public PlayerState withAddedCard(Card card) {        
-        return withAddedCards(SortedBag.of(card));
+        return new PlayerState(tickets(), cards.union(CardBag.of(card)), routes(), partition, ticketPoints, longestTrails);
     }
     
     /**
@@ -95,7 +148,7 @@ public final class PlayerState extends PublicPlayerState {
      * @return un état identique au récepteur, si ce n'est que le joueur possède en plus les cartes données.
      */
     public PlayerState withAddedCards(SortedBag<Card> additionalCards) {
-        return new PlayerState(tickets(), cards().union(additionalCards), routes());
+        return new PlayerState(tickets(), cards.union(CardBag.of(additionalCards)), routes(), partition, ticketPoints, longestTrails);
     }
     
     /**
@@ -107,7 +160,32 @@ public final class PlayerState extends PublicPlayerState {
      */
     public boolean canClaimRoute(Route route) {
     	
-        return carCount() >= route.length() && possibleClaimCards(route).size() > 0;
+        if (carCount() < route.length())
+            return false;
+        
+        return canClaimWith(PackedCardBag.pack(cards), route);
+    }
+    
+    /**
+     * Retourne l'ensemble des routes de ChMap dont le joueur peut s'emparer dans l'état de la partie donné, c-à-d celles
+     * dont personne ne s'est encore emparé et pour lesquelles canClaimRoute retourne vrai, calculé en une seule passe sur la carte.
+     * 
+     * @param gameState
+     *          état (public) de la partie.
+     * @return l'ensemble des routes de ChMap dont le joueur peut s'emparer.
+     */
+    public RouteSet claimableRoutes(PublicGameState gameState) {
+        return LegalActions.claimableRoutes(gameState.claimedRoutes(), PackedCardBag.pack(cards), carCount());
+    }
+    
+    private static boolean canClaimWith(long packedCards, Route route) {
+        
+        for (long possibleCards: route.possibleClaimCardsPacked()) {
+            if (PackedCardBag.contains(packedCards, possibleCards))
+                return true;
+        }
+        
+        return false;
     }
     
     /**
@@ -126,12 +204,14 @@ public final class PlayerState extends PublicPlayerState {
     	
     	List<SortedBag<Card>>  theList = new ArrayList<SortedBag<Card>>();
     	
-    	List<SortedBag<Card>> possibleClaimCards = route.possibleClaimCards();
-
-		for (SortedBag<Card> possibleCards: possibleClaimCards) {			
-			if (possibleCards.difference(cards).size() == 0)
-				theList.add(possibleCards);
-		}
+    	// Les options de la route sont comparées à la main empaquetée, toutes les multiplicités d'une option l'étant en une opération ;
+    	// les ensembles retenus sont ceux, partagés, de la route.
+    	long packedCards = PackedCardBag.pack(cards);
+    	long[] possibleCards = route.possibleClaimCardsPacked();
+    	for (int i = 0; i < possibleCards.length; i++) {
+    	    if (PackedCardBag.contains(packedCards, possibleCards[i]))
+    	        theList.add(route.possibleClaimCards().get(i));
+    	}
 		
 		return theList;
     }
@@ -172,9 +252,7 @@ public final class PlayerState extends PublicPlayerState {
         if (initialCards.countOf(Card.LOCOMOTIVE) == 0)
             builder.add(cards.countOf(Card.LOCOMOTIVE), Card.LOCOMOTIVE);           
             
-        SortedBag<Card> possibleCards = builder.build();
-            
-        possibleCards = possibleCards.difference(initialCards);
+        SortedBag<Card> possibleCards = builder.remove(initialCards).build();
                 
         if (possibleCards.size() == 0)
             return theList;                     // Aucune carte correspondante dans la main du joueur.
@@ -182,11 +260,10 @@ public final class PlayerState extends PublicPlayerState {
         if (additionalCardsCount > possibleCards.size())
             return theList; 
 
-        if (possibleCards.subsetsOfSize(additionalCardsCount).size() == 0)
-            return theList;                     // Pas assez de cartes désirées dans la main du joueur.
-        
-        theList = new ArrayList<SortedBag<Card>>(possibleCards.subsetsOfSize(additionalCardsCount));
-        theList.sort(Comparator.comparingInt(cs -> cs.countOf(Card.LOCOMOTIVE)));
+        // Sous-ensembles produits directement par ordre croissant du nombre de cartes locomotives.
+        theList = possibleCards.subsetsStream(additionalCardsCount, Card.LOCOMOTIVE)
+                .map(CanonicalCardBags::intern)
+                .collect(Collectors.toList());
         
         return theList;
     }
@@ -208,7 +285,14 @@ public final class PlayerState extends PublicPlayerState {
     	List<Route> newRoutes = new ArrayList<Route>(routes());
     	newRoutes.add(route);
     	
-    	return new PlayerState(tickets(), cards.difference(claimCards), newRoutes);
+    	// Les points des billets ne changent que si la route joint deux parties jusque-là disjointes du réseau.
+    	StationPartition newPartition = partition.withConnected(route.station1(), route.station2());
+    	int newTicketPoints = (newPartition == partition) ? ticketPoints : UNKNOWN_POINTS;
+    	
+    	// Seul le plus long chemin de la composante contenant la route est recalculé, et ce seulement s'il est suivi.
+    	LongestTrails newLongestTrails = (longestTrails != null) ? longestTrails.withClaimedRoute(route, newPartition) : null;
+    	
+    	return new PlayerState(tickets(), cards.difference(CardBag.of(claimCards)), newRoutes, newPartition, newTicketPoints, newLongestTrails);
     }
     
     /**
@@ -218,37 +302,34 @@ public final class PlayerState extends PublicPlayerState {
      */
     public int ticketPoints() {
         
-        // Etapes suivies telles que expliquees dans @744.  Voir aussi @791.
-    	
-    	// Etape 1: Determiner la valeur max to station.id() des stations
-    	// dans la route du joueur.
-    	//
-    	int maxStationID = 0;
-    	for (Route route: routes()) {    		
-    		maxStationID = Math.max(maxStationID, route.station1().id());
-    		maxStationID = Math.max(maxStationID, route.station2().id());
-    	}
-
-    	// Etape 2: créer une StationPartition en utilisant le StationPartition.Builder.
-    	//    	
-    	StationPartition.Builder spBuilder = new StationPartition.Builder(maxStationID + 1);
-
-    	for (Route route: routes()) {
-    		spBuilder.connect(route.station1(), route.station2());    		
-    	}
-    	    	
-    	StationPartition stationPartition = spBuilder.build();
-    	        
-    	// Etape 3: calculer la valeur des tickets en utilisant StationPartition
-    	// pour la connectivite'.
-    	//    	        
-        int tcktPoints = 0;
-        for (Ticket ticket : tickets()) {
-            
-            tcktPoints += ticket.points(stationPartition);
-        }
+        if (ticketPoints == UNKNOWN_POINTS)
+            ticketPoints = pointsOf(tickets);
+        
+        return ticketPoints;
+    }
+    
+    private int pointsOf(SortedBag<Ticket> someTickets) {
+        
+        int points = 0;
+        for (Ticket ticket : someTickets)
+            points += ticket.points(partition);
+        
+        return points;
+    }
+    
+    /**
+     * Retourne le plus long chemin du réseau du joueur (voir Trail.longest).
+     * Le premier appel le calcule composante par composante ; les états obtenus ensuite au moyen de withClaimedRoute
+     * ne recalculent que celui de la composante contenant la route prise, de sorte que les appels suivants sont en temps constant.
+     * 
+     * @return le plus long chemin du réseau du joueur.
+     */
+    public Trail longestTrail() {
+        
+        if (longestTrails == null)
+            longestTrails = LongestTrails.of(routes(), partition);
         
-        return tcktPoints;
+        return longestTrails.longest();
     }
     
     /**
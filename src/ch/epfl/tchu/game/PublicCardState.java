@@ -1,7 +1,6 @@
 package ch.epfl.tchu.game;
 
 import java.util.List;
-import java.util.Objects;
 
 import ch.epfl.tchu.Preconditions;
 
@@ -12,7 +11,8 @@ import ch.epfl.tchu.Preconditions;
  */
 public class PublicCardState {
 
-    private final List<Card> faceUpCards;
+    // Les 5 cartes face visible, empaquetées au moyen de PackedFaceUpCards.
+    private final int faceUpCards;
     private final int deckSize;
     private final int discardsSize;
     
@@ -37,7 +37,32 @@ public class PublicCardState {
     	Preconditions.checkArgument(deckSize >= 0);
        	Preconditions.checkArgument(discardsSize >= 0);
            	
-    	this.faceUpCards = List.copyOf(faceUpCards);
+    	this.faceUpCards = PackedFaceUpCards.pack(faceUpCards);
+        this.deckSize = deckSize;
+        this.discardsSize = discardsSize;
+    }
+    
+    /**
+     * Construit un état public des cartes dans lequel les cartes face visible sont celles, empaquetées, données,
+     * la pioche contient deckSize cartes et la défausse en contient discardsSize.
+     * 
+     * @param packedFaceUpCards
+     *          cartes visibles du plateau, empaquetées au moyen de PackedFaceUpCards.
+     * @param deckSize
+     *          nombre de carte de la pioche.
+     * @param discardsSize
+     *          nombre de carte de la défausse.
+     * @exception IllegalArgumentException
+     *          si packedFaceUpCards n'est pas valide,
+     *          ou si la taille de la pioche ou de la défausse sont négatives (< 0).
+     */
+    public PublicCardState(int packedFaceUpCards, int deckSize, int discardsSize) {
+
+    	Preconditions.checkArgument(PackedFaceUpCards.isValid(packedFaceUpCards));
+    	Preconditions.checkArgument(deckSize >= 0);
+       	Preconditions.checkArgument(discardsSize >= 0);
+           	
+    	this.faceUpCards = packedFaceUpCards;
         this.deckSize = deckSize;
         this.discardsSize = discardsSize;
     }
@@ -49,7 +74,7 @@ public class PublicCardState {
      * @return le nombre total de cartes qui ne sont pas en main des joueurs.
      */
     public int totalSize() {
-        return faceUpCards.size() + deckSize + discardsSize;
+        return Constants.FACE_UP_CARDS_COUNT + deckSize + discardsSize;
     }
     
     /**
@@ -58,7 +83,16 @@ public class PublicCardState {
      * @return les 5 cartes face visible, sous la forme d'une liste comportant exactement 5 éléments.
      */
     public List<Card> faceUpCards() {
-        return List.copyOf(faceUpCards);
+        return PackedFaceUpCards.unpack(faceUpCards);
+    }
+    
+    /**
+     * Retourne les 5 cartes face visible, empaquetées au moyen de PackedFaceUpCards.
+     * 
+     * @return les 5 cartes face visible, empaquetées.
+     */
+    public int packedFaceUpCards() {
+        return faceUpCards;
     }
     
     /**
@@ -69,7 +103,7 @@ public class PublicCardState {
      *          si cet index n'est pas compris entre 0 (inclus) et 5 (exclus).
      */
     public Card faceUpCard(int slot) {
-        return faceUpCards.get(Objects.checkIndex(slot, Constants.FACE_UP_CARDS_COUNT));
+        return PackedFaceUpCards.get(faceUpCards, slot);
     }
     
     /**
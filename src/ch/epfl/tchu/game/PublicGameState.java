@@ -1,7 +1,5 @@
 package ch.epfl.tchu.game;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -17,9 +15,16 @@ public class PublicGameState {
 	private final int ticketsCount;
 	private final PublicCardState cardState;
 	private final PlayerId currentPlayerId;
-	private final Map<PlayerId, PublicPlayerState> playerState;
+	// Etat public des joueurs, indexé par l'ordinal de leur identité.
+	private final PublicPlayerState[] playerState;
 	private final PlayerId lastPlayer;
 	
+	// Propriétaire de chaque route de ChMap, indexé par son identifiant dense (ordinal de l'identité du joueur plus 1, ou 0 si
+	// la route est libre) ; calculé au premier appel de routeOwner, ou hérité de l'état précédent (voir inheritRouteOwners).
+	// Le champ est volatile car l'état peut être partagé entre plusieurs fils d'exécution : un tableau n'y est publié qu'une
+	// fois rempli, et n'est plus modifié ensuite. Deux fils peuvent le calculer simultanément, mais obtiennent le même résultat.
+	private volatile byte[] routeOwners;
+	
 	/**
 	 * Construit la partie publique de l'état d'une partie de tCHu dans laquelle la pioche de billets a une taille de ticketsCount,
 	 * l'état public des cartes wagon/locomotive est cardState, le joueur courant est currentPlayerId,
@@ -41,9 +46,31 @@ public class PublicGameState {
 	 * 
 	 */
 	public PublicGameState(int ticketsCount, PublicCardState cardState, PlayerId currentPlayerId, Map<PlayerId, PublicPlayerState> playerState, PlayerId lastPlayer) {
+		this(ticketsCount, cardState, currentPlayerId, toArray(playerState), lastPlayer);
+	}
+
+	/**
+	 * Construit la partie publique de l'état d'une partie de tCHu, comme le constructeur public,
+	 * mais à partir d'un tableau contenant l'état public de chacun des joueurs, indexé par l'ordinal de son identité.
+	 * Le tableau n'est pas copié, et doit donc ne plus être modifié ; il peut être partagé par plusieurs états.
+	 * 
+	 * @param ticketsCount
+	 *         taille de la pioche de billets.
+	 * @param cardState
+	 *         état public des cartes wagon/locomotive.
+	 * @param currentPlayerId
+	 *         identité du joueur courant.
+	 * @param playerState
+	 *         état public des joueurs, indexé par l'ordinal de leur identité.
+	 * @param lastPlayer
+	 *         identité du dernier joueur.
+	 * @exception IllegalArgumentException
+	 *         si la taille de la pioche est strictement négative ou si playerState ne contient pas exactement deux éléments.
+	 */
+	PublicGameState(int ticketsCount, PublicCardState cardState, PlayerId currentPlayerId, PublicPlayerState[] playerState, PlayerId lastPlayer) {
 
 	    Preconditions.checkArgument(ticketsCount >= 0);
-        Preconditions.checkArgument(playerState.size() == PlayerId.COUNT);
+        Preconditions.checkArgument(playerState.length == PlayerId.COUNT);
 	    
 		this.ticketsCount = ticketsCount;
 		this.cardState = Objects.requireNonNull(cardState);
@@ -52,6 +79,17 @@ public class PublicGameState {
 		this.lastPlayer = lastPlayer;
 	}
 
+	private static PublicPlayerState[] toArray(Map<PlayerId, PublicPlayerState> playerState) {
+
+        Preconditions.checkArgument(playerState.size() == PlayerId.COUNT);
+
+		PublicPlayerState[] array = new PublicPlayerState[PlayerId.COUNT];
+		for (PlayerId playerId : PlayerId.ALL)
+			array[playerId.ordinal()] = Objects.requireNonNull(playerState.get(playerId));
+
+		return array;
+	}
+
 	/**
      * Retourne la taille de la pioche de billets.
      * 
@@ -104,7 +142,7 @@ public class PublicGameState {
      * @return la partie publique de l'état du joueur d'identité donnée.
      */        
     public PublicPlayerState playerState(PlayerId playerId) {
-    	return playerState.get(playerId);
+    	return playerState[playerId.ordinal()];
     }
 
     /**
@@ -117,16 +155,116 @@ public class PublicGameState {
     }
     
     /**
-     * Retourne la totalité des routes dont l'un ou l'autre des joueurs s'est emparé.
+     * Retourne l'ensemble des routes dont l'un ou l'autre des joueurs s'est emparé.
      * 
-     * @return la totalité des routes dont l'un ou l'autre des joueurs s'est emparé.    
+     * @return l'ensemble des routes dont l'un ou l'autre des joueurs s'est emparé.    
      */            
-    public List<Route> claimedRoutes() {
+    public RouteSet claimedRoutes() {
+    	
+    	RouteSet claimedRoutes = RouteSet.of();
+    	for (PublicPlayerState state : playerState)
+    		claimedRoutes = claimedRoutes.union(state.routeSet());
     	
-    	List<Route> list1 = new ArrayList<Route>(playerState(currentPlayerId).routes());
-    	List<Route> list2 = playerState(currentPlayerId.next()).routes();
-    	list1.addAll(list2);
-    	return (list1);
+    	return claimedRoutes;
+    }
+    
+    /**
+     * Retourne l'identité du joueur qui s'est emparé de la route donnée, ou null si elle est libre.
+     * Pour les routes de ChMap, la réponse est lue dans une table construite une seule fois par état.
+     * 
+     * @param route
+     *          route dont on cherche le propriétaire.
+     * @return l'identité du joueur qui s'est emparé de la route donnée, ou null si personne ne s'en est emparé.
+     */
+    public PlayerId routeOwner(Route route) {
+    	
+    	int index = ChMap.routeIndex(route);
+    	if (index >= 0) {
+    		int owner = routeOwners()[index];
+    		return (owner == 0) ? null : PlayerId.ALL.get(owner - 1);
+    	}
+    	
+    	for (PlayerId id : PlayerId.ALL) {
+    		if (playerState(id).routeSet().contains(route))
+    			return id;
+    	}
+    	
+    	return null;
+    }
+    
+    /**
+     * Retourne vrai ssi l'un ou l'autre des joueurs s'est emparé de la route donnée.
+     * 
+     * @param route
+     *          route à tester.
+     * @return vrai ssi l'un ou l'autre des joueurs s'est emparé de la route donnée.
+     */
+    public boolean isClaimed(Route route) {
+    	return routeOwner(route) != null;
+    }
+    
+    /**
+     * Retourne l'identité du joueur qui s'est emparé de la route double de la route donnée, c-à-d de l'autre route de ChMap
+     * reliant les mêmes gares, ou null si celle-ci est libre ou si la route donnée est simple.
+     * 
+     * @param route
+     *          route dont on cherche le propriétaire de la route double.
+     * @return l'identité du joueur qui s'est emparé de la route double de la route donnée, ou null s'il n'y en a pas.
+     */
+    public PlayerId siblingOwner(Route route) {
+    	
+    	int index = ChMap.routeIndex(route);
+    	int siblingIndex = (index >= 0) ? ChMap.siblingIndex(index) : -1;
+    	if (siblingIndex < 0)
+    		return null;
+    	
+    	int owner = routeOwners()[siblingIndex];
+    	return (owner == 0) ? null : PlayerId.ALL.get(owner - 1);
+    }
+    
+    private byte[] routeOwners() {
+    	
+    	byte[] owners = routeOwners;
+    	if (owners == null) {
+    		owners = new byte[ChMap.routes().size()];
+    		for (PlayerId id : PlayerId.ALL) {
+    			for (Route route : playerState(id).routeSet()) {
+    				int index = ChMap.routeIndex(route);
+    				if (index >= 0)
+    					owners[index] = (byte) (id.ordinal() + 1);
+    			}
+    		}
+    		routeOwners = owners;
+    	}
+    	
+    	return owners;
+    }
+    
+    /**
+     * Reprend la table des propriétaires des routes de l'état donné, dont le récepteur ne diffère que par la route donnée,
+     * prise par le joueur donné (ou par aucune route si elle est nulle). La table n'est partagée ou mise à jour que si
+     * l'état donné l'a déjà construite ; sinon, le récepteur la construira au besoin.
+     * 
+     * @param previous
+     *          état dont le récepteur est issu.
+     * @param claimedRoute
+     *          route prise lors de la transition, ou null.
+     * @param playerId
+     *          identité du joueur ayant pris la route.
+     */
+    void inheritRouteOwners(PublicGameState previous, Route claimedRoute, PlayerId playerId) {
+    	
+    	byte[] owners = previous.routeOwners;
+    	if (owners == null)
+    		return;
+    	
+    	int index = (claimedRoute != null) ? ChMap.routeIndex(claimedRoute) : -1;
+    	if (index >= 0) {
+    		owners = owners.clone();
+    		owners[index] = (byte) (playerId.ordinal() + 1);
+    	}
+    	
+    	routeOwners = owners;
     }
     
     /**
@@ -137,4 +275,15 @@ public class PublicGameState {
     public PlayerId lastPlayer() {
     	return lastPlayer;
     }
+    
+    /**
+     * Retourne une clef de hachage (de Zobrist) de 64 bits de la partie publique de l'état, c-à-d une valeur égale
+     * pour deux états publics égaux, et très probablement différente pour deux états publics différents.
+     * L'ordre dans lequel les routes ont été prises n'influence pas la clef.
+     * 
+     * @return une clef de hachage de 64 bits de la partie publique de l'état.
+     */
+    public long publicPositionHash() {
+    	return Zobrist.publicKey(ticketsCount, cardState, currentPlayerId, playerState, lastPlayer);
+    }
 }
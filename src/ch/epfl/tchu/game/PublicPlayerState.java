@@ -15,6 +15,7 @@ public class PublicPlayerState {
     private final int ticketCount;
     private final int cardCount;
     private final List<Route> routes;
+    private final RouteSet routeSet;
     private final int carCount;
     private final int claimPoints;
     
@@ -55,6 +56,7 @@ public class PublicPlayerState {
         
         this.carCount = Constants.INITIAL_CAR_COUNT - sommeLgrRoutes;        
         this.claimPoints = sommeCtrRoutes;
+        this.routeSet = RouteSet.of(this.routes);
     }
     
     /**
@@ -84,6 +86,15 @@ public class PublicPlayerState {
         return List.copyOf(routes);
     }
     
+    /**
+     * Retourne l'ensemble des routes dont le joueur s'est emparé, dont le test d'appartenance se fait en temps constant.
+     * 
+     * @return l'ensemble des routes dont le joueur s'est emparé.
+     */
+    public RouteSet routeSet() {
+        return routeSet;
+    }
+    
     /**
      * Retourne le nombre de wagons que possède le joueur.
      * 
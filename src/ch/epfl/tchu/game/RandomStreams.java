@@ -0,0 +1,67 @@
+package ch.epfl.tchu.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * Offre des méthodes permettant d'obtenir, à partir d'une seule graine maîtresse, des générateurs aléatoires
+ * indépendants et reproductibles, un par partie. Cela permet de simuler un grand nombre de parties en parallèle,
+ * dans un ordre quelconque, tout en obtenant exactement les mêmes parties d'une exécution à l'autre.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+public final class RandomStreams {
+
+    // Incrément de Weyl (partie fractionnaire du nombre d'or), tel qu'utilisé par SplittableRandom.
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Empêche l'instanciation de la classe.
+     */
+    private RandomStreams() {}
+
+    /**
+     * Retourne le générateur aléatoire de la partie d'index donné, pour la graine maîtresse donnée.
+     * Deux appels avec les mêmes arguments retournent des générateurs produisant la même suite de valeurs,
+     * alors que les générateurs de deux parties différentes sont statistiquement indépendants.
+     *
+     * @param masterSeed
+     *          graine maîtresse, commune à toutes les parties.
+     * @param gameIndex
+     *          index de la partie.
+     * @return le générateur aléatoire de la partie d'index donné.
+     */
+    public static SplittableRandom forGame(long masterSeed, long gameIndex) {
+
+        // Les graines de deux générateurs ne doivent pas différer de GOLDEN_GAMMA, sans quoi leurs suites seraient décalées
+        // l'une de l'autre ; elles sont donc mélangées, puis le générateur est scindé afin d'obtenir un incrément qui lui est propre.
+        return new SplittableRandom(mix64(masterSeed + GOLDEN_GAMMA * (gameIndex + 1))).split();
+    }
+
+    /**
+     * Retourne les générateurs aléatoires des count premières parties, pour la graine maîtresse donnée.
+     * Le générateur d'index i est égal à celui retourné par forGame(masterSeed, i).
+     *
+     * @param masterSeed
+     *          graine maîtresse, commune à toutes les parties.
+     * @param count
+     *          nombre de parties.
+     * @return les générateurs aléatoires des count premières parties.
+     */
+    public static SplittableRandom[] forGames(long masterSeed, int count) {
+
+        SplittableRandom[] generators = new SplittableRandom[count];
+        for (int i = 0; i < count; i++)
+            generators[i] = forGame(masterSeed, i);
+
+        return generators;
+    }
+
+    /**
+     * Retourne la valeur donnée, mélangée au moyen de la fonction de finalisation de SplitMix64.
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -15,12 +15,37 @@ import ch.epfl.tchu.SortedBag;
  */
 public final class Route {
     
+    // Ensembles de cartes permettant de s'emparer d'une route, calculés une fois pour toutes et partagés
+    // par toutes les routes de même niveau, couleur et longueur (voir signature).
+    private static final int SIGNATURES_COUNT = Level.values().length * (Color.COUNT + 1) * (Constants.MAX_ROUTE_LENGTH + 1);
+    private static final long[][] PACKED_CLAIM_CARDS = new long[SIGNATURES_COUNT][];
+    private static final List<List<SortedBag<Card>>> CLAIM_CARDS = new ArrayList<List<SortedBag<Card>>>(SIGNATURES_COUNT);
+    
+    static {
+        for (int signature = 0; signature < SIGNATURES_COUNT; signature++) {
+            
+            int length = signature % (Constants.MAX_ROUTE_LENGTH + 1);
+            int colorIndex = (signature / (Constants.MAX_ROUTE_LENGTH + 1)) % (Color.COUNT + 1);
+            Level level = Level.values()[signature / ((Constants.MAX_ROUTE_LENGTH + 1) * (Color.COUNT + 1))];
+            Color color = (colorIndex < Color.COUNT) ? Color.ALL.get(colorIndex) : null;
+            
+            long[] packedBags = (length >= Constants.MIN_ROUTE_LENGTH) ? claimCardsPacked(length, level, color) : new long[0];
+            List<SortedBag<Card>> bags = new ArrayList<SortedBag<Card>>(packedBags.length);
+            for (long packedBag: packedBags)
+                bags.add(CanonicalCardBags.of(packedBag));
+            
+            PACKED_CLAIM_CARDS[signature] = packedBags;
+            CLAIM_CARDS.add(List.copyOf(bags));
+        }
+    }
+    
     private final String id;
     private final Station station1;
     private final Station station2;
     private final int length;
     private final Level level;
     private final Color color;
+    private final int signature;
     
     /**
      * Représentant les deux niveaux auquel une route peut se trouver.
@@ -67,6 +92,13 @@ public final class Route {
         this.length = length;
         this.level = level;
         this.color = color;
+        this.signature = signature(length, level, color);
+    }
+    
+    private static int signature(int length, Level level, Color color) {
+        
+        int colorIndex = (color != null) ? color.ordinal() : Color.COUNT;
+        return (level.ordinal() * (Color.COUNT + 1) + colorIndex) * (Constants.MAX_ROUTE_LENGTH + 1) + length;
     }
     
     /**
@@ -151,42 +183,51 @@ public final class Route {
     /**
      * Retourne la liste de tous les ensembles de cartes qui pourraient être joués pour tenter de s'emparer de la route,
      * triée par ordre croissant de nombre de cartes locomotive, puis par couleur.
+     * La liste retournée n'est pas modifiable, et est partagée par toutes les routes de même niveau, couleur et longueur.
      * 
      * @return la liste de tous les ensembles de cartes qui pourraient être joués pour tenter de s'emparer de la route, triée.
      */
-      public List<SortedBag<Card>> possibleClaimCards() {
-            
-            ArrayList<SortedBag<Card>> theList = new ArrayList<SortedBag<Card>>();
-            
-            int locomotiveCardCountMax = (level == Level.UNDERGROUND)? length : 0;          
-            
-            for (int locomotiveCardCount = 0;  locomotiveCardCount <= locomotiveCardCountMax; locomotiveCardCount++) {
-            
-                if (color != null) {
-                    var cardsBuilder = new SortedBag.Builder<Card>();
-                    cardsBuilder.add(length - locomotiveCardCount, Card.of(color));
-                    cardsBuilder.add(locomotiveCardCount, Card.LOCOMOTIVE);
-                    theList.add(cardsBuilder.build());
-                } else {
-                    
-                    if (locomotiveCardCount == length) {
-                        var cardsBuilder = new SortedBag.Builder<Card>();
-                        cardsBuilder.add(locomotiveCardCount, Card.LOCOMOTIVE);
-                        theList.add(cardsBuilder.build());                          
-                        
-                    } else {
-                        for (Color clr: Color.ALL) {
-                            var cardsBuilder = new SortedBag.Builder<Card>();
-                            cardsBuilder.add(length - locomotiveCardCount, Card.of(clr));
-                            cardsBuilder.add(locomotiveCardCount, Card.LOCOMOTIVE);
-                            theList.add(cardsBuilder.build());                          
-                        }
-                    }               
-                } 
+    public List<SortedBag<Card>> possibleClaimCards() {
+        return CLAIM_CARDS.get(signature);
+    }
+
+    /**
+     * Retourne les mêmes ensembles de cartes que possibleClaimCards, dans le même ordre,
+     * mais sous la forme de multiensembles empaquetés (voir PackedCardBag).
+     * Le tableau retourné est partagé par toutes les routes de même niveau, couleur et longueur, et ne doit pas être modifié.
+     * 
+     * @return la liste de tous les ensembles de cartes qui pourraient être joués pour tenter de s'emparer de la route, triée.
+     */
+    long[] possibleClaimCardsPacked() {
+        return PACKED_CLAIM_CARDS[signature];
+    }
+
+    private static long[] claimCardsPacked(int length, Level level, Color color) {
+
+        int locomotiveCardCountMax = (level == Level.UNDERGROUND)? length : 0;
+        int optionsCount = (color != null)? locomotiveCardCountMax + 1
+                : (locomotiveCardCountMax == length)? length * Color.COUNT + 1 : Color.COUNT;
+
+        long[] theList = new long[optionsCount];
+        int i = 0;
+
+        for (int locomotiveCardCount = 0;  locomotiveCardCount <= locomotiveCardCountMax; locomotiveCardCount++) {
+
+            long locomotives = PackedCardBag.of(locomotiveCardCount, Card.LOCOMOTIVE);
+
+            if (color != null) {
+                theList[i++] = locomotives | PackedCardBag.of(length - locomotiveCardCount, Card.of(color));
+            } else if (locomotiveCardCount == length) {
+                theList[i++] = locomotives;
+            } else {
+                for (Color clr: Color.ALL)
+                    theList[i++] = locomotives | PackedCardBag.of(length - locomotiveCardCount, Card.of(clr));
             }
-                        
-            return theList;         
-       }
+        }
+
+        assert i == theList.length;
+        return theList;
+    }
 
     /**
      * Retourne le nombre de cartes additionnelles à jouer pour s'emparer de la route (en tunnel),
@@ -205,23 +246,7 @@ public final class Route {
         Preconditions.checkArgument(level == Level.UNDERGROUND);
         Preconditions.checkArgument(drawnCards.size() == Constants.ADDITIONAL_TUNNEL_CARDS);
                 
-        int matchColor = 0;
-        int matchLocomotive = 0;
-        
-        for (Card dc: drawnCards)           
-            if (dc.color() != null) {                                // Si drawn card est un wagon.
-                for (Card cc: claimCards) {                          // Boucle car on ne sait si les claim cards posées par le joueur sont triée,
-                                                                     // elles peuvent commencer par une locomotive.
-                    if (dc.color() == cc.color()) {
-                        matchColor += 1;
-                        break;                                       // On sort de la boucle car les wagons restants des claim cards sont de la même couleur.
-                    }
-                }
-            } else {                                                 // Si drawn card est une locomotive.
-                matchLocomotive += 1;
-            }        
-        
-        return matchColor + matchLocomotive ;
+        return PackedCardBag.matchingCount(PackedCardBag.pack(claimCards), PackedCardBag.pack(drawnCards));
     }
     
     /**
@@ -0,0 +1,389 @@
+package ch.epfl.tchu.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import ch.epfl.tchu.Preconditions;
+
+/**
+ * Ensemble immuable de routes, représenté par un ensemble de bits indexé par l'identifiant dense des routes de ChMap.
+ *
+ * L'identifiant dense d'une route de ChMap est sa position dans ChMap.routes(). Le test d'appartenance d'une telle route
+ * se fait donc en temps constant, et l'union ou l'intersection de deux ensembles en une opération par groupe de 64 routes.
+ * Les éventuelles routes ne faisant pas partie de la carte sont conservées dans un tableau propre à chaque ensemble,
+ * parcouru au besoin ; aucune information n'est donc partagée entre les ensembles.
+ * Les routes de la carte sont énumérées dans l'ordre de ChMap.routes(), puis les autres dans l'ordre de leur ajout.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+public final class RouteSet implements Iterable<Route> {
+
+    private static final int ROUTES_COUNT = ChMap.routes().size();
+    private static final int WORDS_COUNT = (ROUTES_COUNT + Long.SIZE - 1) / Long.SIZE;
+    private static final Route[] NO_ROUTES = new Route[0];
+    private static final RouteSet EMPTY = new RouteSet(new long[0], NO_ROUTES);
+
+    // Ensemble de bits des identifiants des routes de ChMap ; le dernier élément n'est jamais nul, de sorte que deux ensembles
+    // égaux ont des tableaux égaux. Routes ne faisant pas partie de ChMap, sans doublons (les routes sont comparées par
+    // référence), dans l'ordre de leur ajout. Attention : les tableaux ne sont jamais copiés ni modifiés après construction !
+    private final long[] bits;
+    private final Route[] others;
+    private final int size;
+
+    private RouteSet(long[] bits, Route[] others) {
+
+        int size = others.length;
+        for (long word : bits)
+            size += Long.bitCount(word);
+
+        assert bits.length == 0 || bits[bits.length - 1] != 0;
+
+        this.bits = bits;
+        this.others = others;
+        this.size = size;
+    }
+
+    /**
+     * Retourne l'ensemble des routes dont les identifiants denses sont les bits à 1 de l'ensemble de bits donné.
+     * Attention : le tableau donné n'est pas copié, et ne doit plus être modifié par la suite !
+     */
+    static RouteSet ofBits(long[] bits) {
+        return of(bits, NO_ROUTES);
+    }
+
+    private static RouteSet of(long[] bits, Route[] others) {
+
+        int length = bits.length;
+        while (length > 0 && bits[length - 1] == 0)
+            length -= 1;
+
+        if (length == 0 && others.length == 0)
+            return EMPTY;
+
+        return new RouteSet((length == bits.length) ? bits : Arrays.copyOf(bits, length), others);
+    }
+
+    /**
+     * Retourne l'ensemble vide.
+     *
+     * @return l'ensemble vide.
+     */
+    public static RouteSet of() {
+        return EMPTY;
+    }
+
+    /**
+     * Retourne l'ensemble des routes données, dont les éventuels doublons sont ignorés.
+     *
+     * @param routes
+     *          routes de l'ensemble.
+     * @return l'ensemble des routes données.
+     */
+    public static RouteSet of(Iterable<Route> routes) {
+
+        if (routes instanceof RouteSet)
+            return (RouteSet) routes;
+
+        long[] bits = new long[WORDS_COUNT];
+        List<Route> others = new ArrayList<Route>();
+        for (Route route : routes) {
+            int id = ChMap.routeIndex(route);
+            if (id >= 0)
+                bits[id / Long.SIZE] |= 1L << id;
+            else if (!others.contains(route))
+                others.add(route);
+        }
+
+        return of(bits, others.toArray(NO_ROUTES));
+    }
+
+    /**
+     * Retourne l'ensemble des routes de ChMap dont le bit est à 1 dans l'ensemble de bits donné, le bit d'index i correspondant
+     * à la route d'index i de ChMap.routes(). C'est l'inverse de toLongArray pour les ensembles de routes de ChMap.
+     *
+     * @param bits
+     *          ensemble de bits des routes.
+     * @return l'ensemble des routes de ChMap correspondant aux bits donnés.
+     * @exception IllegalArgumentException
+     *          si l'un des bits à 1 ne correspond à aucune route de ChMap.
+     */
+    public static RouteSet ofLongArray(long[] bits) {
+
+        for (int w = 0; w < bits.length; w++) {
+            int validBits = Math.max(0, Math.min(Long.SIZE, ROUTES_COUNT - w * Long.SIZE));
+            long validMask = (validBits == Long.SIZE) ? -1L : (1L << validBits) - 1;
+            Preconditions.checkArgument((bits[w] & ~validMask) == 0);
+        }
+
+        return ofBits(bits.clone());
+    }
+
+    /**
+     * Retourne vrai ssi l'ensemble est vide.
+     *
+     * @return vrai ssi l'ensemble est vide.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Retourne le nombre de routes de l'ensemble.
+     *
+     * @return le nombre de routes de l'ensemble.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retourne vrai ssi l'ensemble contient la route donnée.
+     *
+     * @param route
+     *          route à tester.
+     * @return vrai ssi l'ensemble contient la route donnée.
+     */
+    public boolean contains(Route route) {
+
+        int id = ChMap.routeIndex(route);
+        return (id >= 0) ? containsId(id) : containsOther(others, route);
+    }
+
+    /**
+     * Retourne vrai ssi l'ensemble contient la route dont l'identifiant dense est celui donné.
+     */
+    boolean containsId(int id) {
+        return id / Long.SIZE < bits.length && (bits[id / Long.SIZE] & (1L << id)) != 0;
+    }
+
+    private static boolean containsOther(Route[] others, Route route) {
+
+        for (Route other : others) {
+            if (other == route)
+                return true;
+        }
+
+        return false;
+    }
+
+    // Routes de others1 faisant (ou ne faisant pas) partie de others2, dans leur ordre.
+    private static Route[] filterOthers(Route[] others1, Route[] others2, boolean kept) {
+
+        if (others1.length == 0)
+            return NO_ROUTES;
+
+        List<Route> filtered = new ArrayList<Route>(others1.length);
+        for (Route route : others1) {
+            if (containsOther(others2, route) == kept)
+                filtered.add(route);
+        }
+
+        return (filtered.size() == others1.length) ? others1 : filtered.toArray(NO_ROUTES);
+    }
+
+    /**
+     * Retourne un ensemble identique au récepteur, si ce n'est qu'il contient en plus la route donnée.
+     *
+     * @param route
+     *          route à ajouter.
+     * @return l'ensemble contenant les routes du récepteur et la route donnée.
+     */
+    public RouteSet with(Route route) {
+
+        if (contains(route))
+            return this;
+
+        int id = ChMap.routeIndex(route);
+        if (id < 0) {
+            Route[] newOthers = Arrays.copyOf(others, others.length + 1);
+            newOthers[others.length] = route;
+            return new RouteSet(bits, newOthers);
+        }
+
+        long[] newBits = Arrays.copyOf(bits, Math.max(bits.length, id / Long.SIZE + 1));
+        newBits[id / Long.SIZE] |= 1L << id;
+
+        return new RouteSet(newBits, others);
+    }
+
+    /**
+     * Retourne l'union du récepteur et de l'ensemble donné.
+     *
+     * @param that
+     *          ensemble à unir au récepteur.
+     * @return l'union des deux ensembles.
+     */
+    public RouteSet union(RouteSet that) {
+
+        if (that.isEmpty())
+            return this;
+        if (isEmpty())
+            return that;
+
+        long[] longer = (bits.length >= that.bits.length) ? bits : that.bits;
+        long[] shorter = (longer == bits) ? that.bits : bits;
+
+        long[] newBits = longer.clone();
+        for (int w = 0; w < shorter.length; w++)
+            newBits[w] |= shorter[w];
+
+        Route[] newOthers = others;
+        Route[] addedOthers = filterOthers(that.others, others, false);
+        if (addedOthers.length > 0) {
+            newOthers = Arrays.copyOf(others, others.length + addedOthers.length);
+            System.arraycopy(addedOthers, 0, newOthers, others.length, addedOthers.length);
+        }
+
+        return new RouteSet(newBits, newOthers);
+    }
+
+    /**
+     * Retourne l'intersection du récepteur et de l'ensemble donné.
+     *
+     * @param that
+     *          ensemble à intersecter avec le récepteur.
+     * @return l'intersection des deux ensembles.
+     */
+    public RouteSet intersection(RouteSet that) {
+
+        long[] newBits = new long[Math.min(bits.length, that.bits.length)];
+        for (int w = 0; w < newBits.length; w++)
+            newBits[w] = bits[w] & that.bits[w];
+
+        return of(newBits, filterOthers(others, that.others, true));
+    }
+
+    /**
+     * Retourne l'ensemble des routes du récepteur ne faisant pas partie de l'ensemble donné.
+     *
+     * @param that
+     *          ensemble des routes à retirer du récepteur.
+     * @return la différence des deux ensembles.
+     */
+    public RouteSet difference(RouteSet that) {
+
+        long[] newBits = bits.clone();
+        for (int w = 0; w < Math.min(bits.length, that.bits.length); w++)
+            newBits[w] &= ~that.bits[w];
+
+        return of(newBits, filterOthers(others, that.others, false));
+    }
+
+    /**
+     * Retourne vrai ssi le récepteur et l'ensemble donné ont au moins une route en commun.
+     *
+     * @param that
+     *          ensemble à tester.
+     * @return vrai ssi les deux ensembles ne sont pas disjoints.
+     */
+    public boolean intersects(RouteSet that) {
+
+        for (int w = 0; w < Math.min(bits.length, that.bits.length); w++) {
+            if ((bits[w] & that.bits[w]) != 0)
+                return true;
+        }
+
+        for (Route route : others) {
+            if (containsOther(that.others, route))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Retourne la liste (non modifiable) des routes de l'ensemble, dans l'ordre de leur énumération.
+     *
+     * @return la liste des routes de l'ensemble.
+     */
+    public List<Route> toList() {
+
+        List<Route> routes = new ArrayList<Route>(size);
+        for (Route route : this)
+            routes.add(route);
+
+        return Collections.unmodifiableList(routes);
+    }
+
+    /**
+     * Retourne l'ensemble de bits des routes, dont le bit d'index i vaut 1 ssi l'ensemble contient la route d'index i
+     * de ChMap.routes(). Le tableau retourné (d'au plus 2 éléments pour la carte actuelle) peut être passé à ofLongArray
+     * pour reconstituer l'ensemble.
+     *
+     * @return une copie de l'ensemble de bits des routes.
+     * @exception IllegalArgumentException
+     *          si l'ensemble contient une route ne faisant pas partie de ChMap.
+     */
+    public long[] toLongArray() {
+
+        Preconditions.checkArgument(others.length == 0);
+
+        return bits.clone();
+    }
+
+    /**
+     * Retourne un itérateur sur les routes de l'ensemble : celles de ChMap dans l'ordre de ChMap.routes(), puis les autres
+     * dans l'ordre de leur ajout.
+     *
+     * @return un itérateur sur les routes de this.
+     */
+    @Override
+    public Iterator<Route> iterator() {
+
+        return new Iterator<Route>() {
+            private int word = 0;
+            private long remaining = (bits.length > 0) ? bits[0] : 0;
+            private int other = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (remaining == 0 && word + 1 < bits.length)
+                    remaining = bits[++word];
+                return remaining != 0 || other < others.length;
+            }
+
+            @Override
+            public Route next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                if (remaining == 0)
+                    return others[other++];
+                int id = word * Long.SIZE + Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                return ChMap.routes().get(id);
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+
+        // Les routes ne faisant pas partie de ChMap sont combinées indépendamment de leur ordre.
+        int hashCode = Arrays.hashCode(bits);
+        for (Route route : others)
+            hashCode += route.hashCode();
+
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object that) {
+
+        if (!(that instanceof RouteSet))
+            return false;
+
+        RouteSet thatSet = (RouteSet) that;
+        return Arrays.equals(bits, thatSet.bits)
+                && others.length == thatSet.others.length
+                && filterOthers(others, thatSet.others, true).length == others.length;
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+}
@@ -1,5 +1,7 @@
 package ch.epfl.tchu.game;
 
+import java.util.Arrays;
+
 import ch.epfl.tchu.Preconditions;
 
 /**
@@ -9,10 +11,47 @@ import ch.epfl.tchu.Preconditions;
  */
 public final class StationPartition implements StationConnectivity {
 
+    // Partition ne contenant que des singletons, à partir de laquelle les partitions persistantes sont construites.
+    static final StationPartition EMPTY = new StationPartition(new int[0]);
+
     private final int[] representativeFlat;
     
+    // Le tableau donné n'est pas copié : il ne doit plus être modifié par la suite.
     private StationPartition(int[] representatives) {
-        representativeFlat = representatives.clone();
+        representativeFlat = representatives;
+    }
+    
+    /**
+     * Retourne une partition identique au récepteur, si ce n'est que les sous-ensembles contenant les deux gares données
+     * ont été joints. Le récepteur n'est pas modifié ; il est retourné tel quel si les deux gares sont déjà connectées.
+     * 
+     * La partition étant aplatie, la jonction consiste à remplacer le représentant de l'un des sous-ensembles par celui
+     * de l'autre, en une passe sur les gares ; la partition est agrandie au besoin pour contenir les deux gares.
+     * 
+     * @param s1
+     *          première gare.
+     * @param s2
+     *          seconde gare.
+     * @return la partition dans laquelle les deux gares données sont connectées.
+     */
+    StationPartition withConnected(Station s1, Station s2) {
+        
+        if (connected(s1, s2) && s1.id() < representativeFlat.length)
+            return this;
+        
+        int oldLength = representativeFlat.length;
+        int[] representatives = Arrays.copyOf(representativeFlat, Math.max(oldLength, Math.max(s1.id(), s2.id()) + 1));
+        for (int stationID = oldLength; stationID < representatives.length; stationID++)
+            representatives[stationID] = stationID;
+        
+        int rep1 = representatives[s1.id()];
+        int rep2 = representatives[s2.id()];
+        for (int stationID = 0; stationID < representatives.length; stationID++) {
+            if (representatives[stationID] == rep1)
+                representatives[stationID] = rep2;
+        }
+        
+        return new StationPartition(representatives);
     }
     
     /**
@@ -111,7 +150,7 @@ public final class StationPartition implements StationConnectivity {
             for (int stationID =0; stationID < representative.length; stationID++)
                 representative[stationID] = getRepresentative(stationID);
             
-            return new StationPartition(representative);
+            return new StationPartition(representative.clone());
         }
     }
 }
\ No newline at end of file
@@ -1,7 +1,10 @@
 package ch.epfl.tchu.game;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import ch.epfl.tchu.Preconditions;
 
@@ -81,49 +84,252 @@ public final class Trail {
             return new Trail(null, null, null);
         }
         
-        ArrayList<Trail> cs = new ArrayList<Trail>();       
-        Trail longestTrail = null;
-
-        for (Route r: routes) {
-            Trail r1 = new Trail(r.station1(), r.station2(), List.of(r));
-            Trail r2 = new Trail(r.station2(), r.station1(), List.of(r));
+        // Chaque route ne pouvant figurer qu'une fois dans un chemin, les éventuels doublons sont ignorés.
+        return new LongestTrailSearch(RouteSet.of(routes).toList()).longest();
+    }
+    
+    /**
+     * Recherche en profondeur, avec retour arrière, du plus long chemin d'un réseau.
+     * 
+     * Le réseau est représenté par ses gares (numérotées de manière dense) et, pour chacune d'elles, les routes qui la touchent.
+     * Un chemin est prolongé route par route depuis chacune des gares, les routes déjà empruntées étant marquées dans
+     * un ensemble de bits. Une branche est abandonnée dès que la longueur du chemin, augmentée de la longueur totale des routes
+     * libres encore atteignables depuis son extrémité, ne peut dépasser le plus long chemin trouvé jusque-là. De même,
+     * une composante connexe n'est explorée que si la borne supérieure de la longueur de ses chemins (longueur totale
+     * de ses routes, diminuée de celles qui doivent rester inutilisées en raison des gares de degré impair) dépasse ce dernier,
+     * et son exploration cesse dès que cette borne est atteinte.
+     */
+    private static final class LongestTrailSearch {
+        
+        private final List<Route> routes;
+        private final List<Station> stations = new ArrayList<Station>();
+        
+        // Extrémités et longueur de chaque route, ainsi que les routes touchant chaque gare, indexées par leur numéro.
+        private final int[] edgeFrom;
+        private final int[] edgeTo;
+        private final int[] edgeLength;
+        private final int[][] incidentEdges;
+        
+        // Routes empruntées par le chemin en cours de construction, sous forme de pile et d'ensemble de bits.
+        private final int[] path;
+        private final long[] used;
+        
+        // Pile et marques des gares utilisées pour calculer la longueur des routes libres atteignables.
+        private final int[] stack;
+        private final boolean[] visited;
+        
+        private int bestLength = 0;
+        private int bestStart = -1;
+        private int[] bestPath = new int[0];
+        private int bound;
+        
+        private LongestTrailSearch(List<Route> routes) {
+            
+            this.routes = routes;
+            int edgeCount = routes.size();
+            
+            Map<Station, Integer> stationIndices = new HashMap<Station, Integer>();
+            edgeFrom = new int[edgeCount];
+            edgeTo = new int[edgeCount];
+            edgeLength = new int[edgeCount];
+            int[] degrees = new int[2 * edgeCount];
+            
+            for (int e = 0; e < edgeCount; e++) {
+                Route route = routes.get(e);
+                edgeFrom[e] = stationIndex(stationIndices, route.station1());
+                edgeTo[e] = stationIndex(stationIndices, route.station2());
+                edgeLength[e] = route.length();
+                degrees[edgeFrom[e]] += 1;
+                degrees[edgeTo[e]] += 1;
+            }
             
-            cs.add(r1);
-            cs.add(r2);
+            incidentEdges = new int[stations.size()][];
+            for (int v = 0; v < incidentEdges.length; v++)
+                incidentEdges[v] = new int[degrees[v]];
             
-            if ((longestTrail == null) || (longestTrail.length < r1.length))
-                longestTrail = r1;
+            int[] filled = new int[stations.size()];
+            for (int e = 0; e < edgeCount; e++) {
+                incidentEdges[edgeFrom[e]][filled[edgeFrom[e]]++] = e;
+                incidentEdges[edgeTo[e]][filled[edgeTo[e]]++] = e;
+            }
+            
+            path = new int[edgeCount];
+            used = new long[(edgeCount + Long.SIZE - 1) / Long.SIZE];
+            stack = new int[stations.size()];
+            visited = new boolean[stations.size()];
         }
-
         
-        while(!cs.isEmpty()) {
-            ArrayList<Trail> csprime = new ArrayList<Trail>();
-
-            for (Trail c: cs) {
-                ArrayList<Route> rs = new ArrayList<Route>();           
-
-                for (Route r: routes) {
-                    if (!c.routes.contains(r) && (c.to.equals(r.station1()) || c.to.equals(r.station2()))) 
-                        rs.add(r);
-                }           
-
-                for (Route r: rs) {
-                    ArrayList<Route> extendedRoute = new ArrayList<Route>(c.routes);
-                    extendedRoute.add(r);
-                    Trail newTrail = new Trail(c.station1(), r.stationOpposite(c.station2()), extendedRoute);
-                    csprime.add(newTrail);
+        private int stationIndex(Map<Station, Integer> stationIndices, Station station) {
+            
+            Integer index = stationIndices.get(station);
+            if (index == null) {
+                index = stations.size();
+                stationIndices.put(station, index);
+                stations.add(station);
+            }
+            
+            return index;
+        }
+        
+        private Trail longest() {
+            
+            // Composantes connexes, chacune étant décrite par ses gares et par la borne supérieure de la longueur de ses chemins.
+            int[] component = new int[stations.size()];
+            Arrays.fill(component, -1);
+            List<int[]> componentStations = new ArrayList<int[]>();
+            List<Integer> componentBounds = new ArrayList<Integer>();
+            
+            for (int v = 0; v < stations.size(); v++) {
+                if (component[v] < 0) {
+                    int count = markComponent(v, component, componentStations.size());
+                    int[] members = Arrays.copyOf(stack, count);
+                    componentStations.add(members);
+                    componentBounds.add(upperBound(members));
+                }
+            }
+            
+            Integer[] order = new Integer[componentStations.size()];
+            for (int c = 0; c < order.length; c++)
+                order[c] = c;
+            Arrays.sort(order, (c1, c2) -> Integer.compare(componentBounds.get(c2), componentBounds.get(c1)));
+            
+            for (int c : order) {
+                bound = componentBounds.get(c);
+                boolean hasOddStation = false;
+                for (int v : componentStations.get(c))
+                    hasOddStation |= incidentEdges[v].length % 2 != 0;
+                
+                // Si la composante a des gares de degré impair, un plus long chemin part de l'une d'elles : chaque route touchant
+                // son départ y est empruntée (sinon il pourrait être prolongé), et ce départ diffère de son arrivée (sinon
+                // le chemin, fermé, pourrait être prolongé depuis l'une de ses gares, à moins d'emprunter toutes les routes).
+                for (int v : componentStations.get(c)) {
+                    if (bestLength >= bound)
+                        break;
+                    if (!hasOddStation || incidentEdges[v].length % 2 != 0)
+                        extend(v, v, 0, 0);
+                }
+            }
+            
+            List<Route> trailRoutes = new ArrayList<Route>(bestPath.length);
+            int v = bestStart;
+            for (int e : bestPath) {
+                trailRoutes.add(routes.get(e));
+                v = (edgeFrom[e] == v) ? edgeTo[e] : edgeFrom[e];
+            }
+            
+            return new Trail(stations.get(bestStart), stations.get(v), trailRoutes);
+        }
+        
+        /**
+         * Marque les gares de la composante connexe de la gare donnée, les place au début de stack et retourne leur nombre.
+         */
+        private int markComponent(int start, int[] component, int componentIndex) {
+            
+            int count = 0;
+            stack[count++] = start;
+            component[start] = componentIndex;
+            
+            for (int i = 0; i < count; i++) {
+                for (int e : incidentEdges[stack[i]]) {
+                    int w = (edgeFrom[e] == stack[i]) ? edgeTo[e] : edgeFrom[e];
+                    if (component[w] < 0) {
+                        component[w] = componentIndex;
+                        stack[count++] = w;
+                    }
+                }
+            }
+            
+            return count;
+        }
+        
+        /**
+         * Retourne une borne supérieure de la longueur des chemins de la composante formée des gares données : une gare de degré
+         * impair qui n'est pas une extrémité du chemin a au moins une route inutilisée, et une route en touche au plus deux,
+         * de sorte qu'au moins (k - 2) / 2 routes, où k est le nombre de gares de degré impair, sont inutilisées.
+         */
+        private int upperBound(int[] members) {
+            
+            int totalLength = 0;
+            int minLength = Integer.MAX_VALUE;
+            int oddCount = 0;
+            
+            for (int v : members) {
+                if (incidentEdges[v].length % 2 != 0)
+                    oddCount += 1;
+                for (int e : incidentEdges[v]) {
+                    minLength = Math.min(minLength, edgeLength[e]);
+                    if (edgeFrom[e] == v)
+                        totalLength += edgeLength[e];
+                }
+            }
+            
+            return totalLength - Math.max(0, (oddCount - 2) / 2) * minLength;
+        }
+        
+        private void extend(int start, int v, int depth, int length) {
+            
+            if (length > bestLength) {
+                bestLength = length;
+                bestStart = start;
+                bestPath = Arrays.copyOf(path, depth);
+            }
+            
+            if (bestLength >= bound || length + reachableLength(v) <= bestLength)
+                return;
+            
+            for (int e : incidentEdges[v]) {
+                if ((used[e / Long.SIZE] & (1L << e)) != 0)
+                    continue;
+                
+                used[e / Long.SIZE] |= 1L << e;
+                path[depth] = e;
+                extend(start, (edgeFrom[e] == v) ? edgeTo[e] : edgeFrom[e], depth + 1, length + edgeLength[e]);
+                used[e / Long.SIZE] &= ~(1L << e);
+                
+                if (bestLength >= bound)
+                    return;
+            }
+        }
+        
+        /**
+         * Retourne une borne supérieure de la longueur dont un chemin peut encore être prolongé depuis la gare donnée :
+         * la longueur totale des routes libres atteignables depuis celle-ci au moyen de routes libres, diminuée comme dans
+         * upperBound de celles qui doivent rester inutilisées en raison des gares de degré (en routes libres) impair.
+         */
+        private int reachableLength(int start) {
+            
+            // Chaque route libre atteignable touche deux gares atteignables, et est donc comptée deux fois.
+            int doubleLength = 0;
+            int minLength = Integer.MAX_VALUE;
+            int oddCount = 0;
+            int count = 0;
+            stack[count++] = start;
+            visited[start] = true;
+            
+            for (int i = 0; i < count; i++) {
+                int v = stack[i];
+                int freeDegree = 0;
+                for (int e : incidentEdges[v]) {
+                    if ((used[e / Long.SIZE] & (1L << e)) != 0)
+                        continue;
                     
-                    if (longestTrail.length() < newTrail.length()) {
-                        longestTrail  = newTrail;
+                    freeDegree += 1;
+                    doubleLength += edgeLength[e];
+                    minLength = Math.min(minLength, edgeLength[e]);
+                    int w = (edgeFrom[e] == v) ? edgeTo[e] : edgeFrom[e];
+                    if (!visited[w]) {
+                        visited[w] = true;
+                        stack[count++] = w;
                     }
                 }
+                oddCount += freeDegree % 2;
             }
             
-            cs = csprime;
+            for (int i = 0; i < count; i++)
+                visited[stack[i]] = false;
             
+            return (doubleLength == 0) ? 0 : doubleLength / 2 - Math.max(0, (oddCount - 2) / 2) * minLength;
         }
- 
-        return longestTrail; 
     }
     
     /**
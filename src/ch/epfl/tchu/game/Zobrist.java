@@ -0,0 +1,248 @@
+package ch.epfl.tchu.game;
+
+import java.util.SplittableRandom;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.SortedBag;
+
+/**
+ * Offre les clefs de Zobrist permettant de hacher l'état d'une partie de tCHu de manière incrémentale.
+ *
+ * La clef d'un état est le ou exclusif des clefs de ses composantes, de sorte qu'une transition met à jour la clef
+ * en y combinant (par ou exclusif) la clef de l'ancienne et de la nouvelle valeur des seules composantes qui changent.
+ * Les composantes publiques (celles de PublicGameState) et privées (contenu des mains, des billets et de la défausse)
+ * ont des clefs distinctes, afin que la clef publique puisse être maintenue séparément. L'ordre des pioches, qui n'est
+ * connu de personne, n'est pas haché : seule leur taille l'est, leur contenu étant déterminé par le reste de l'état.
+ *
+ * Les clefs sont tirées au moyen d'un générateur de graine fixe, et sont donc les mêmes d'une exécution à l'autre.
+ * Chaque route et chaque exemplaire de billet de ChMap a sa propre clef, par joueur ; les routes et billets ne faisant
+ * pas partie de la carte ne peuvent donc pas être hachés.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+final class Zobrist {
+
+    // Taille des tables de clefs des tailles et nombres ; les valeurs plus grandes ont une clef calculée.
+    private static final int SIZES = 128;
+    private static final int COUNTS = PackedCardBag.MAX_COUNT + 1;
+
+    private static final SplittableRandom KEYS = new SplittableRandom(0x7C48_5A3E_D1F0_2B69L);
+
+    private static final long[] FACE_UP_CARD = keys(Constants.FACE_UP_CARDS_COUNT * Card.COUNT);
+    private static final long[] DECK_SIZE = keys(SIZES);
+    private static final long[] DISCARDS_SIZE = keys(SIZES);
+    private static final long[] TICKETS_COUNT = keys(SIZES);
+    private static final long[] CURRENT_PLAYER = keys(PlayerId.COUNT);
+    private static final long[] LAST_PLAYER = keys(PlayerId.COUNT + 1);
+    private static final long[] ROUTE = keys(PlayerId.COUNT * ChMap.routes().size());
+    private static final long[] TICKET = keys(PlayerId.COUNT * ChMap.tickets().size());
+    private static final long[] TICKET_COUNT = keys(PlayerId.COUNT * SIZES);
+    private static final long[] CARD_COUNT = keys(PlayerId.COUNT * SIZES);
+    private static final long[] CARD = keys(PlayerId.COUNT * Card.COUNT * COUNTS);
+    private static final long[] DISCARDED_CARD = keys(Card.COUNT * COUNTS);
+    private static final long SIZE_SALT = KEYS.nextLong();
+
+    /**
+     * Empêche l'instanciation de la classe.
+     */
+    private Zobrist() {}
+
+    private static long[] keys(int count) {
+
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++)
+            keys[i] = KEYS.nextLong();
+
+        return keys;
+    }
+
+    private static long size(long[] table, int offset, int size) {
+        return (size < SIZES) ? table[offset + size] : RandomStreams.mix64(SIZE_SALT ^ ((long) offset << 32) ^ size ^ table[offset]);
+    }
+
+    /**
+     * Retourne la clef de la carte donnée, à l'emplacement donné des cartes face visible.
+     */
+    static long faceUpCard(int slot, Card card) {
+        return FACE_UP_CARD[slot * Card.COUNT + card.ordinal()];
+    }
+
+    /**
+     * Retourne la clef des 5 cartes face visible empaquetées au moyen de PackedFaceUpCards.
+     */
+    static long faceUpCards(int packedFaceUpCards) {
+
+        long key = 0;
+        for (int slot = 0; slot < Constants.FACE_UP_CARDS_COUNT; slot++)
+            key ^= faceUpCard(slot, PackedFaceUpCards.get(packedFaceUpCards, slot));
+
+        return key;
+    }
+
+    /**
+     * Retourne la clef de la taille de la pioche des cartes.
+     */
+    static long deckSize(int size) {
+        return size(DECK_SIZE, 0, size);
+    }
+
+    /**
+     * Retourne la clef de la taille de la défausse.
+     */
+    static long discardsSize(int size) {
+        return size(DISCARDS_SIZE, 0, size);
+    }
+
+    /**
+     * Retourne la clef de la taille de la pioche des billets.
+     */
+    static long ticketsCount(int count) {
+        return size(TICKETS_COUNT, 0, count);
+    }
+
+    /**
+     * Retourne la clef du joueur courant.
+     */
+    static long currentPlayer(PlayerId playerId) {
+        return CURRENT_PLAYER[playerId.ordinal()];
+    }
+
+    /**
+     * Retourne la clef du dernier joueur, qui peut être null.
+     */
+    static long lastPlayer(PlayerId playerId) {
+        return LAST_PLAYER[(playerId == null) ? 0 : playerId.ordinal() + 1];
+    }
+
+    /**
+     * Retourne la clef de la possession de la route donnée par le joueur donné.
+     *
+     * @exception IllegalArgumentException
+     *          si la route ne fait pas partie de ChMap.
+     */
+    static long route(PlayerId playerId, Route route) {
+
+        int index = ChMap.routeIndex(route);
+        Preconditions.checkArgument(index >= 0);
+
+        return ROUTE[playerId.ordinal() * ChMap.routes().size() + index];
+    }
+
+    /**
+     * Retourne la clef du nombre de billets du joueur donné.
+     */
+    static long ticketCount(PlayerId playerId, int count) {
+        return size(TICKET_COUNT, playerId.ordinal() * SIZES, count);
+    }
+
+    /**
+     * Retourne la clef du nombre de cartes du joueur donné.
+     */
+    static long cardCount(PlayerId playerId, int count) {
+        return size(CARD_COUNT, playerId.ordinal() * SIZES, count);
+    }
+
+    /**
+     * Retourne la clef de la multiplicité de la carte donnée dans la main du joueur donné (composante privée).
+     */
+    static long card(PlayerId playerId, Card card, int count) {
+        return CARD[(playerId.ordinal() * Card.COUNT + card.ordinal()) * COUNTS + count];
+    }
+
+    /**
+     * Retourne la clef de la main du joueur donné, empaquetée au moyen de PackedCardBag (composante privée).
+     */
+    static long cards(PlayerId playerId, long packedCards) {
+
+        long key = 0;
+        for (Card card : Card.ALL)
+            key ^= card(playerId, card, PackedCardBag.countOf(packedCards, card));
+
+        return key;
+    }
+
+    /**
+     * Retourne la clef de la défausse, empaquetée au moyen de PackedCardBag (composante privée).
+     */
+    static long discards(long packedCards) {
+
+        long key = 0;
+        for (Card card : Card.ALL)
+            key ^= DISCARDED_CARD[card.ordinal() * COUNTS + PackedCardBag.countOf(packedCards, card)];
+
+        return key;
+    }
+
+    /**
+     * Retourne la clef des billets donnés du joueur donné (composante privée), c-à-d le ou exclusif des clefs de chacun
+     * de leurs exemplaires.
+     *
+     * @exception IllegalArgumentException
+     *          si l'un des billets ne fait pas partie de ChMap, ou y figure moins de fois.
+     */
+    static long tickets(PlayerId playerId, SortedBag<Ticket> tickets) {
+        return addedTickets(playerId, SortedBag.of(), tickets);
+    }
+
+    /**
+     * Retourne la clef des billets ajoutés à ceux que possède le joueur donné, c-à-d la différence (par ou exclusif) entre
+     * la clef de l'union des deux ensembles de billets et celle des billets possédés.
+     *
+     * Le n-ième exemplaire d'un billet a la clef du n-ième exemplaire de ce billet dans ChMap, de sorte que les deux
+     * exemplaires d'un billet pays à pays ont des clefs différentes, qui ne s'annulent pas. La clef des billets ajoutés
+     * dépend donc du nombre d'exemplaires de chacun d'eux que possède déjà le joueur.
+     *
+     * @exception IllegalArgumentException
+     *          si l'un des billets ajoutés ne fait pas partie de ChMap, ou y figure moins de fois que dans l'union.
+     */
+    static long addedTickets(PlayerId playerId, SortedBag<Ticket> heldTickets, SortedBag<Ticket> addedTickets) {
+
+        long key = 0;
+        for (Ticket ticket : addedTickets.toSet()) {
+            int heldCount = heldTickets.countOf(ticket);
+            for (int occurrence = heldCount; occurrence < heldCount + addedTickets.countOf(ticket); occurrence++) {
+                int index = ChMap.ticketIndex(ticket, occurrence);
+                Preconditions.checkArgument(index >= 0);
+                key ^= TICKET[playerId.ordinal() * ChMap.tickets().size() + index];
+            }
+        }
+
+        return key;
+    }
+
+    /**
+     * Retourne la clef des composantes publiques de l'état donné, calculée entièrement.
+     */
+    static long publicKey(int ticketsCount, PublicCardState cardState, PlayerId currentPlayerId, PublicPlayerState[] playerState, PlayerId lastPlayer) {
+
+        long key = ticketsCount(ticketsCount)
+                ^ faceUpCards(cardState.packedFaceUpCards())
+                ^ deckSize(cardState.deckSize())
+                ^ discardsSize(cardState.discardsSize())
+                ^ currentPlayer(currentPlayerId)
+                ^ lastPlayer(lastPlayer);
+
+        for (PlayerId id : PlayerId.ALL) {
+            PublicPlayerState state = playerState[id.ordinal()];
+            key ^= ticketCount(id, state.ticketCount()) ^ cardCount(id, state.cardCount());
+            for (Route route : state.routes())
+                key ^= route(id, route);
+        }
+
+        return key;
+    }
+
+    /**
+     * Retourne la clef des composantes privées de l'état donné, calculée entièrement.
+     */
+    static long privateKey(CardState cardState, PlayerState[] playerState) {
+
+        long key = discards(PackedCardBag.pack(cardState.discardedCards()));
+        for (PlayerId id : PlayerId.ALL) {
+            PlayerState state = playerState[id.ordinal()];
+            key ^= cards(id, PackedCardBag.pack(state.cardBag())) ^ tickets(id, state.tickets());
+        }
+
+        return key;
+    }
+}
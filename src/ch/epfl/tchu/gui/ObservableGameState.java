@@ -15,6 +15,7 @@ import ch.epfl.tchu.game.PlayerState;
 import ch.epfl.tchu.game.PublicGameState;
 import ch.epfl.tchu.game.PublicPlayerState;
 import ch.epfl.tchu.game.Route;
+import ch.epfl.tchu.game.RouteSet;
 import ch.epfl.tchu.game.Ticket;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyIntegerProperty;
@@ -87,22 +88,19 @@ public class ObservableGameState {
             eachPlayerNbOfPoints.put(playerId, publicPlayerState.claimPoints());
         }
         
+        // Routes dont le joueur peut s'emparer (aucune si ce n'est pas son tour).
+        RouteSet claimableRoutes = (newGameState.currentPlayerId() == associatedPlayerId)
+                ? newPlayerState.claimableRoutes(newGameState) : RouteSet.of();
+        
         for (Route route : ChMap.routes()) {
             
             // routesAndPlayerId
-            for (PlayerId playerId : PlayerId.ALL) {
-                
-                if (newGameState.playerState(playerId).routes().contains(route)) {
-                    
-                    routesAndPlayerId.put(route, playerId);
-                    break;
-                }
-            }
+            PlayerId owner = newGameState.routeOwner(route);
+            if (owner != null)
+                routesAndPlayerId.put(route, owner);
             
             // routesDisponibility
-            boolean canTakeRoute = newGameState.currentPlayerId() == associatedPlayerId && 
-                                    newPlayerState.canClaimRoute(route) &&
-                                    !newGameState.claimedRoutes().contains(route);
+            boolean canTakeRoute = claimableRoutes.contains(route);
             
             routesDisponibility.put(route, canTakeRoute);
         }
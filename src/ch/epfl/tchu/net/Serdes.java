@@ -6,12 +6,17 @@ import java.util.Base64;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.StringJoiner;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 
+import ch.epfl.tchu.Preconditions;
 import ch.epfl.tchu.SortedBag;
 import ch.epfl.tchu.game.Card;
+import ch.epfl.tchu.game.CardBag;
 import ch.epfl.tchu.game.ChMap;
+import ch.epfl.tchu.game.Constants;
+import ch.epfl.tchu.game.PackedFaceUpCards;
 import ch.epfl.tchu.game.Player.TurnKind;
 import ch.epfl.tchu.game.PlayerId;
 import ch.epfl.tchu.game.PlayerState;
@@ -77,7 +82,36 @@ public class Serdes {
 	 */
 	public static final Serde<Card> CARD = Serde.oneOf(Card.ALL);
 	public static final Serde<List<Card>> CARD_LIST = Serde.listOf(CARD, ",");	
-	public static final Serde<SortedBag<Card>> CARD_SORTED_BAG = Serde.bagOf(CARD, ",");	
+
+	private static Function<CardBag, String> cardBagSerialize = new Function<CardBag, String>() {
+		   @Override
+		   public String apply(CardBag cb) {
+			   StringJoiner j = new StringJoiner(",");
+			   for (Card card : Card.ALL) {
+				   String s = CARD.serialize(card);
+				   for (int i = 0; i < cb.countOf(card); i++)
+					   j.add(s);
+			   }
+			   return j.toString();
+		   }
+	};
+
+	private static Function<String, CardBag> cardBagDeserialize = new Function<String, CardBag>() {
+		   @Override
+		   public CardBag apply(String s) {
+			   CardBag.Builder builder = new CardBag.Builder();
+			   if (!s.isEmpty()) {
+				   for (String sc : s.split(Pattern.quote(",")))
+					   builder.add(CARD.deserialize(sc));
+			   }
+			   return builder.build();
+		   }
+	};
+
+	public static final Serde<CardBag> CARD_BAG = Serde.of(cardBagSerialize, cardBagDeserialize);
+	public static final Serde<SortedBag<Card>> CARD_SORTED_BAG = Serde.of(
+			cards -> CARD_BAG.serialize(CardBag.of(cards)),
+			s -> CARD_BAG.deserialize(s).toSortedBag());
 	public static final Serde<List<SortedBag<Card>>> CARD_SORTED_BAG_LIST = Serde.listOf(CARD_SORTED_BAG, ";");	
 
 	
@@ -103,7 +137,12 @@ public class Serdes {
 	private static Function<PublicCardState, String> pcsSerialize = new Function<PublicCardState, String>() {
 		   @Override
 		   public String apply(PublicCardState pcs) {
-			   String s1 = CARD_LIST.serialize(pcs.faceUpCards());
+			   // Les cartes face visible sont sérialisées directement à partir de leur version empaquetée.
+			   int packedFaceUpCards = pcs.packedFaceUpCards();
+			   StringJoiner j = new StringJoiner(",");
+			   for (int slot = 0; slot < Constants.FACE_UP_CARDS_COUNT; slot++)
+				   j.add(CARD.serialize(PackedFaceUpCards.get(packedFaceUpCards, slot)));
+			   String s1 = j.toString();
 			   String s2 = INTEGER.serialize(pcs.deckSize());
 			   String s3 = INTEGER.serialize(pcs.discardsSize());
 			   return s1 + ";" + s2 + ";" + s3;
@@ -114,11 +153,15 @@ public class Serdes {
 		   @Override
 		   public PublicCardState apply(String s) {
 			   String[] sa = s.split(Pattern.quote(";"));
-			   List<Card> faceUpCards = CARD_LIST.deserialize(sa[0]);
-			   Integer deckSize = INTEGER.deserialize(sa[0]);
-			   Integer discardsSize = INTEGER.deserialize(sa[0]);
+			   String[] sc = sa[0].split(Pattern.quote(","));
+			   Preconditions.checkArgument(sc.length == Constants.FACE_UP_CARDS_COUNT);
+			   int packedFaceUpCards = 0;
+			   for (int slot = 0; slot < Constants.FACE_UP_CARDS_COUNT; slot++)
+				   packedFaceUpCards = PackedFaceUpCards.with(packedFaceUpCards, slot, CARD.deserialize(sc[slot]));
+			   Integer deckSize = INTEGER.deserialize(sa[1]);
+			   Integer discardsSize = INTEGER.deserialize(sa[2]);
 			   
-			   return new PublicCardState(faceUpCards, deckSize, discardsSize);
+			   return new PublicCardState(packedFaceUpCards, deckSize, discardsSize);
 			   
 			}
 	};
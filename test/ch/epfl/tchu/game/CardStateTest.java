@@ -0,0 +1,41 @@
+package ch.epfl.tchu.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.tchu.SortedBag;
+
+/**
+ * Vérifie que l'état des cartes construit à partir d'un Deck, dont les cartes sont converties à la demande,
+ * contient les cartes du tas dans le même ordre.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+class CardStateTest {
+
+    @Test
+    void ofDeckKeepsDeckOrder() {
+
+        for (int seed = 0; seed < 100; seed++) {
+            List<Card> cards = Deck.of(Constants.ALL_CARDS, new SplittableRandom(seed)).toList();
+            Deck<Card> deck = Deck.of(Constants.ALL_CARDS, new SplittableRandom(seed));
+
+            CardState state = CardState.of(deck);
+            CardDeck stateDeck = state.deck();
+
+            assertEquals(SortedBag.of(cards.subList(0, Constants.FACE_UP_CARDS_COUNT)), SortedBag.of(state.faceUpCards()));
+            assertEquals(cards.size() - Constants.FACE_UP_CARDS_COUNT, stateDeck.size());
+
+            // Le tas d'origine et sa conversion sont consultés en alternance, et dans le désordre.
+            assertEquals(cards.get(Constants.FACE_UP_CARDS_COUNT), deck.withoutTopCards(Constants.FACE_UP_CARDS_COUNT).topCard());
+            assertEquals(cards.get(Constants.FACE_UP_CARDS_COUNT + 1), stateDeck.get(1));
+            assertEquals(cards.get(cards.size() - 1), deck.get(cards.size() - 1));
+            for (int i = stateDeck.size() - 1; i >= 0; i--)
+                assertEquals(cards.get(Constants.FACE_UP_CARDS_COUNT + i), stateDeck.get(i));
+        }
+    }
+}
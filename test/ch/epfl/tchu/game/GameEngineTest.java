@@ -0,0 +1,173 @@
+package ch.epfl.tchu.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.tchu.SortedBag;
+
+/**
+ * Vérifie que GameEngine applique et annule les actions comme le font les méthodes correspondantes de GameState.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+class GameEngineTest {
+
+    private static final int GAMES_COUNT = 30;
+    private static final int STEPS_COUNT = 300;
+
+    @Test
+    void applyAndUndoMatchGameStateAlongRandomGames() {
+
+        SplittableRandom rng = new SplittableRandom(2014);
+        for (int game = 0; game < GAMES_COUNT; game++) {
+            GameState state = GameState.initial(SortedBag.of(ChMap.tickets()), new SplittableRandom(game));
+            GameEngine engine = new GameEngine(state);
+
+            // États successifs de la partie, que les annulations doivent retrouver dans l'ordre inverse.
+            List<GameState> states = new ArrayList<GameState>();
+            states.add(state);
+
+            for (PlayerId id : PlayerId.ALL) {
+                SortedBag<Ticket> drawnTickets = state.topTickets(Constants.INITIAL_TICKETS_COUNT);
+                SortedBag<Ticket> chosenTickets = SortedBag.of(1, drawnTickets.get(0), 1, drawnTickets.get(2));
+
+                state = state.withoutTopTickets(Constants.INITIAL_TICKETS_COUNT);
+                engine.apply(GameEngine.Action.removeTopTickets(Constants.INITIAL_TICKETS_COUNT));
+                states.add(assertSameState(state, engine));
+
+                state = state.withInitiallyChosenTickets(id, chosenTickets);
+                engine.apply(GameEngine.Action.chooseInitialTickets(id, chosenTickets));
+                states.add(assertSameState(state, engine));
+            }
+
+            for (int step = 0; step < STEPS_COUNT; step++) {
+                state = randomStep(state, engine, rng, states);
+                states.add(assertSameState(state, engine));
+            }
+
+            assertEquals(states.size() - 1, engine.depth());
+            for (int i = states.size() - 1; i > 0; i--) {
+                engine.undo();
+                assertSameState(states.get(i - 1), engine);
+            }
+            assertEquals(0, engine.depth());
+        }
+    }
+
+    @Test
+    void rejectedActionsLeaveEngineUnchanged() {
+
+        GameState initial = GameState.initial(SortedBag.of(ChMap.tickets()), new SplittableRandom(2014));
+        GameEngine engine = new GameEngine(initial);
+        engine.apply(GameEngine.Action.drawBlindCard());
+
+        PackedGameState state = PackedGameState.of(engine.toGameState());
+        long positionHash = engine.positionHash();
+        long publicPositionHash = engine.publicPositionHash();
+
+        // Route et billet ne faisant pas partie de ChMap, dont les clefs de Zobrist ne peuvent donc pas être calculées.
+        Station from = ChMap.stations().get(0);
+        Station to = ChMap.stations().get(1);
+        Route route = new Route("XX_YY_1", from, to, 1, Route.Level.OVERGROUND, null);
+        SortedBag<Card> claimCards = SortedBag.of(engine.cards(engine.currentPlayerId()).get(0));
+        SortedBag<Ticket> tickets = SortedBag.of(new Ticket(from, to, 1));
+
+        assertThrows(IllegalArgumentException.class, () -> engine.apply(GameEngine.Action.claimRoute(route, claimCards)));
+        assertThrows(IllegalArgumentException.class, () -> engine.apply(GameEngine.Action.chooseTickets(tickets, tickets)));
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.apply(GameEngine.Action.chooseInitialTickets(engine.currentPlayerId().next(), tickets)));
+
+        assertEquals(1, engine.depth());
+        assertEquals(positionHash, engine.positionHash());
+        assertEquals(publicPositionHash, engine.publicPositionHash());
+        assertEquals(state, PackedGameState.of(engine.toGameState()));
+
+        engine.undo();
+
+        assertEquals(0, engine.depth());
+        assertEquals(initial.positionHash(), engine.positionHash());
+        assertEquals(PackedGameState.of(initial), PackedGameState.of(engine.toGameState()));
+    }
+
+    // Applique une même transition, tirée au hasard, à l'état et au moteur donnés, et retourne le nouvel état.
+    // Les étapes intermédiaires d'une transition composée sont ajoutées aux états donnés.
+    private static GameState randomStep(GameState state, GameEngine engine, SplittableRandom rng, List<GameState> states) {
+
+        if (state.cardState().isDeckEmpty()) {
+            long seed = rng.nextLong();
+            engine.recreateCardsDeckIfNeeded(new SplittableRandom(seed));
+            return state.withCardsDeckRecreatedIfNeeded(new SplittableRandom(seed));
+        }
+
+        switch (rng.nextInt(6)) {
+        case 0:
+            if (!state.canDrawCards())
+                break;
+            int slot = rng.nextInt(Constants.FACE_UP_CARDS_COUNT);
+            engine.apply(GameEngine.Action.drawFaceUpCard(slot));
+            return state.withDrawnFaceUpCard(slot);
+        case 1:
+            if (!state.canDrawCards())
+                break;
+            engine.apply(GameEngine.Action.drawBlindCard());
+            return state.withBlindlyDrawnCard();
+        case 2:
+            LegalActions legalActions = LegalActions.of(state);
+            List<Route> routes = legalActions.claimableRoutes().toList();
+            if (routes.isEmpty())
+                break;
+            Route route = routes.get(rng.nextInt(routes.size()));
+            SortedBag<Card> claimCards = legalActions.claimCards(route).get(0);
+            engine.apply(GameEngine.Action.claimRoute(route, claimCards));
+            return state.withClaimedRoute(route, claimCards);
+        case 3:
+            if (state.ticketsCount() < Constants.IN_GAME_TICKETS_COUNT)
+                break;
+            SortedBag<Ticket> drawnTickets = state.topTickets(Constants.IN_GAME_TICKETS_COUNT);
+            SortedBag<Ticket> chosenTickets = SortedBag.of(drawnTickets.get(rng.nextInt(drawnTickets.size())));
+            engine.apply(GameEngine.Action.chooseTickets(drawnTickets, chosenTickets));
+            return state.withChosenAdditionalTickets(drawnTickets, chosenTickets);
+        case 4:
+            // Tentative de prise d'un tunnel : les 3 cartes du sommet de la pioche sont retirées puis défaussées.
+            if (state.cardState().deckSize() < Constants.ADDITIONAL_TUNNEL_CARDS)
+                break;
+            SortedBag.Builder<Card> drawnCards = new SortedBag.Builder<Card>();
+            for (int i = 0; i < Constants.ADDITIONAL_TUNNEL_CARDS; i++) {
+                drawnCards.add(state.topCard());
+                state = state.withoutTopCard();
+                engine.apply(GameEngine.Action.removeTopCard());
+                states.add(assertSameState(state, engine));
+            }
+            engine.apply(GameEngine.Action.discardCards(drawnCards.build()));
+            return state.withMoreDiscardedCards(drawnCards.build());
+        default:
+            break;
+        }
+
+        engine.apply(GameEngine.Action.endTurn());
+        return state.forNextTurn();
+    }
+
+    // Vérifie que l'état du moteur est celui donné, et retourne ce dernier.
+    private static GameState assertSameState(GameState state, GameEngine engine) {
+
+        GameState engineState = engine.toGameState();
+
+        assertEquals(PackedGameState.of(state), PackedGameState.of(engineState));
+        assertEquals(state.positionHash(), engine.positionHash());
+        assertEquals(state.publicPositionHash(), engine.publicPositionHash());
+        for (PlayerId id : PlayerId.ALL) {
+            assertEquals(state.playerState(id).routes(), engine.routes(id));
+            assertEquals(state.playerState(id).claimPoints(), engine.claimPoints(id));
+            assertEquals(state.playerState(id).carCount(), engine.carCount(id));
+        }
+
+        return state;
+    }
+}
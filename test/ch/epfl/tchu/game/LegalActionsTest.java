@@ -0,0 +1,116 @@
+package ch.epfl.tchu.game;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.tchu.SortedBag;
+
+/**
+ * Vérifie que les actions calculées en une passe par LegalActions sont celles que permettent, une à une,
+ * les méthodes de PlayerState et de GameState.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+class LegalActionsTest {
+
+    private static final int GAMES_COUNT = 30;
+    private static final int STEPS_COUNT = 300;
+
+    @Test
+    void legalActionsMatchPlayerStateAlongRandomGames() {
+
+        SplittableRandom rng = new SplittableRandom(2018);
+        int claimableCount = 0;
+        for (int game = 0; game < GAMES_COUNT; game++) {
+            GameState state = GameState.initial(SortedBag.of(ChMap.tickets()), new SplittableRandom(game));
+            for (int step = 0; step < STEPS_COUNT; step++) {
+                claimableCount += assertLegalActionsAreCorrect(state);
+                state = randomStep(state, rng);
+            }
+        }
+
+        assertTrue(claimableCount > 0);
+    }
+
+    @Test
+    void routesOutsideChMapAreNotClaimable() {
+
+        GameState state = GameState.initial(SortedBag.of(ChMap.tickets()), new SplittableRandom(2018));
+        Route route = new Route("XX_YY_1", ChMap.stations().get(0), ChMap.stations().get(1), 1, Route.Level.OVERGROUND, null);
+
+        assertTrue(state.currentPlayerState().canClaimRoute(route));
+        assertTrue(!LegalActions.of(state).isClaimable(route));
+    }
+
+    // Retourne l'état suivant l'état donné, dans lequel le joueur courant tire le plus souvent des cartes, afin que
+    // les joueurs puissent s'emparer de routes de plus en plus longues.
+    private static GameState randomStep(GameState state, SplittableRandom rng) {
+
+        if (state.cardState().isDeckEmpty())
+            return state.withCardsDeckRecreatedIfNeeded(new SplittableRandom(rng.nextLong()));
+
+        switch (rng.nextInt(4)) {
+        case 0:
+        case 1:
+            if (!state.canDrawCards())
+                break;
+            return state.withBlindlyDrawnCard();
+        case 2:
+            LegalActions legalActions = LegalActions.of(state);
+            List<Route> routes = legalActions.claimableRoutes().toList();
+            if (routes.isEmpty())
+                break;
+            Route route = routes.get(rng.nextInt(routes.size()));
+            List<SortedBag<Card>> claimCards = legalActions.claimCards(route);
+            return state.withClaimedRoute(route, claimCards.get(rng.nextInt(claimCards.size())));
+        default:
+            break;
+        }
+
+        return state.forNextTurn();
+    }
+
+    // Vérifie les actions calculées pour l'état donné et pour un moteur construit à partir de celui-ci, et retourne
+    // le nombre de routes dont le joueur courant peut s'emparer.
+    private static int assertLegalActionsAreCorrect(GameState state) {
+
+        LegalActions legalActions = LegalActions.of(state);
+        PlayerState playerState = state.currentPlayerState();
+
+        int claimableCount = 0;
+        for (Route route : ChMap.routes()) {
+            boolean claimable = !state.claimedRoutes().contains(route) && playerState.canClaimRoute(route);
+            assertEquals(claimable, legalActions.isClaimable(route), route.id());
+            if (!claimable)
+                continue;
+
+            List<SortedBag<Card>> claimCards = playerState.possibleClaimCards(route);
+            long[] packedClaimCards = new long[claimCards.size()];
+            for (int i = 0; i < packedClaimCards.length; i++)
+                packedClaimCards[i] = PackedCardBag.pack(claimCards.get(i));
+
+            assertEquals(claimCards, legalActions.claimCards(route), route.id());
+            assertArrayEquals(packedClaimCards, legalActions.packedClaimCards(route), route.id());
+            claimableCount += 1;
+        }
+
+        assertEquals(claimableCount, legalActions.claimableRoutes().size());
+        assertEquals(legalActions.claimableRoutes(), LegalActions.of(new GameEngine(state)).claimableRoutes());
+
+        assertEquals(state.canDrawTickets(), legalActions.canDrawTickets());
+        assertEquals(state.canDrawCards(), legalActions.canDrawCards());
+        assertEquals(state.canDrawCards(), legalActions.canDrawCard(Constants.DECK_SLOT));
+        for (int slot : Constants.FACE_UP_CARD_SLOTS) {
+            assertEquals(state.canDrawCards(), legalActions.canDrawCard(slot));
+            assertEquals(state.canDrawCards(), (legalActions.drawableFaceUpSlots() & 1 << slot) != 0);
+        }
+
+        return claimableCount;
+    }
+}
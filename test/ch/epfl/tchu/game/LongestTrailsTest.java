@@ -0,0 +1,90 @@
+package ch.epfl.tchu.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.tchu.SortedBag;
+
+/**
+ * Vérifie que le plus long chemin maintenu incrémentalement par PlayerState.longestTrail (voir LongestTrails)
+ * est toujours aussi long que celui que calcule Trail.longest à partir de toutes les routes du joueur.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+class LongestTrailsTest {
+
+    private static final int SEQUENCES_COUNT = 200;
+    private static final int MAX_CLAIMS_COUNT = 20;
+
+    @Test
+    void longestTrailMatchesFullComputationAlongRandomClaims() {
+
+        Random rng = new Random(2025);
+        for (int n = 0; n < SEQUENCES_COUNT; n++) {
+            List<Route> routes = new ArrayList<Route>(ChMap.routes());
+            Collections.shuffle(routes, rng);
+
+            // Le plus long chemin est suivi dès le début, ou seulement à partir d'un nombre de routes tiré au hasard.
+            int trackedFrom = rng.nextInt(MAX_CLAIMS_COUNT);
+            PlayerState state = new PlayerState(SortedBag.of(), SortedBag.of(), List.of());
+            for (int c = 0; c < MAX_CLAIMS_COUNT; c++) {
+                if (c == trackedFrom)
+                    state.longestTrail();
+
+                state = claim(state, routes.get(c));
+                if (c >= trackedFrom)
+                    assertLongestTrailIsCorrect(state);
+            }
+        }
+    }
+
+    @Test
+    void longestTrailMatchesFullComputationWhenClaimMergesTwoComponents() {
+
+        int mergesCount = 0;
+        for (Route middle : ChMap.routes()) {
+            for (Route left : ChMap.routes()) {
+                for (Route right : ChMap.routes()) {
+                    if (!isChain(left, middle, right))
+                        continue;
+
+                    // Les routes des deux côtés forment deux composantes, que la route du milieu réunit.
+                    PlayerState state = claim(claim(new PlayerState(SortedBag.of(), SortedBag.of(), List.of()), left), right);
+                    state.longestTrail();
+                    state = claim(state, middle);
+
+                    assertLongestTrailIsCorrect(state);
+                    assertEquals(left.length() + middle.length() + right.length(), state.longestTrail().length());
+                    mergesCount += 1;
+                }
+            }
+        }
+
+        assertTrue(mergesCount > 0);
+    }
+
+    // Vrai ssi left touche la première gare de middle et right la seconde, sans que left et right ne se touchent.
+    private static boolean isChain(Route left, Route middle, Route right) {
+
+        return left.stations().contains(middle.station1()) && !left.stations().contains(middle.station2())
+                && right.stations().contains(middle.station2()) && !right.stations().contains(middle.station1())
+                && !left.stations().contains(right.station1()) && !left.stations().contains(right.station2());
+    }
+
+    private static PlayerState claim(PlayerState state, Route route) {
+
+        SortedBag<Card> claimCards = route.possibleClaimCards().get(0);
+        return state.withAddedCards(claimCards).withClaimedRoute(route, claimCards);
+    }
+
+    private static void assertLongestTrailIsCorrect(PlayerState state) {
+        assertEquals(Trail.longest(state.routes()).length(), state.longestTrail().length(), state.routes().toString());
+    }
+}
@@ -0,0 +1,112 @@
+package ch.epfl.tchu.game;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.tchu.SortedBag;
+
+/**
+ * Vérifie que l'encodage d'un état au moyen de PackedGameState peut être décodé, sous toutes ses formes.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+class PackedGameStateTest {
+
+    private static final int GAMES_COUNT = 30;
+    private static final int STEPS_COUNT = 300;
+
+    @Test
+    void roundTripsStatesAlongRandomGames() {
+
+        SplittableRandom rng = new SplittableRandom(2016);
+        for (int game = 0; game < GAMES_COUNT; game++) {
+            GameState state = GameState.initial(SortedBag.of(ChMap.tickets()), new SplittableRandom(game));
+            for (PlayerId id : PlayerId.ALL) {
+                SortedBag<Ticket> drawnTickets = state.topTickets(Constants.INITIAL_TICKETS_COUNT);
+                state = state.withoutTopTickets(Constants.INITIAL_TICKETS_COUNT)
+                        .withInitiallyChosenTickets(id, SortedBag.of(1, drawnTickets.get(0), 1, drawnTickets.get(1)));
+            }
+            assertRoundTrips(state);
+
+            for (int step = 0; step < STEPS_COUNT; step++) {
+                state = randomStep(state, rng);
+                assertRoundTrips(state);
+            }
+        }
+    }
+
+    @Test
+    void roundTripsStateWithEmptyDecks() {
+
+        GameState state = GameState.initial(SortedBag.of(ChMap.tickets()), new SplittableRandom(2016));
+        state = state.withoutTopTickets(state.ticketsCount());
+        assertRoundTrips(state);
+
+        while (!state.cardState().isDeckEmpty())
+            state = state.withoutTopCard();
+        assertRoundTrips(state);
+    }
+
+    // Retourne l'état suivant l'état donné, au moyen d'une transition tirée au hasard.
+    private static GameState randomStep(GameState state, SplittableRandom rng) {
+
+        if (state.cardState().isDeckEmpty())
+            return state.withCardsDeckRecreatedIfNeeded(new SplittableRandom(rng.nextLong()));
+
+        switch (rng.nextInt(5)) {
+        case 0:
+            if (!state.canDrawCards())
+                break;
+            return state.withDrawnFaceUpCard(rng.nextInt(Constants.FACE_UP_CARDS_COUNT));
+        case 1:
+            if (!state.canDrawCards())
+                break;
+            return state.withBlindlyDrawnCard();
+        case 2:
+            LegalActions legalActions = LegalActions.of(state);
+            List<Route> routes = legalActions.claimableRoutes().toList();
+            if (routes.isEmpty())
+                break;
+            Route route = routes.get(rng.nextInt(routes.size()));
+            return state.withClaimedRoute(route, legalActions.claimCards(route).get(0));
+        case 3:
+            if (!state.canDrawTickets())
+                break;
+            SortedBag<Ticket> drawnTickets = state.topTickets(Math.min(Constants.IN_GAME_TICKETS_COUNT, state.ticketsCount()));
+            return state.withChosenAdditionalTickets(drawnTickets, SortedBag.of(drawnTickets.get(0)));
+        default:
+            break;
+        }
+
+        return state.forNextTurn();
+    }
+
+    private static void assertRoundTrips(GameState state) {
+
+        PackedGameState packed = PackedGameState.of(state);
+        long[] words = packed.toLongArray();
+
+        assertArrayEquals(words, PackedGameState.of(words).toLongArray());
+        assertArrayEquals(words, PackedGameState.of(packed.toByteBuffer()).toLongArray());
+        assertArrayEquals(words, PackedGameState.of(packed.toGameState()).toLongArray());
+        assertEquals(state.positionHash(), packed.toGameState().positionHash());
+
+        assertEquals(state.currentPlayerId(), packed.currentPlayerId());
+        assertEquals(state.lastPlayer(), packed.lastPlayer());
+        assertEquals(state.ticketsCount(), packed.ticketsCount());
+        assertEquals(state.cardState().deckSize(), packed.deckSize());
+        assertEquals(state.cardState().packedFaceUpCards(), packed.packedFaceUpCards());
+        for (PlayerId id : PlayerId.ALL) {
+            PlayerState playerState = state.playerState(id);
+            assertEquals(playerState.tickets(), packed.tickets(id));
+            assertEquals(PackedCardBag.pack(playerState.cardBag()), packed.packedCards(id));
+            assertEquals(new HashSet<Route>(playerState.routes()), new HashSet<Route>(packed.routes(id)));
+        }
+    }
+}
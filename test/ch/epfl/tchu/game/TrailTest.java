@@ -0,0 +1,123 @@
+package ch.epfl.tchu.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compare la recherche élaguée de Trail.longest à une recherche exhaustive, sur des réseaux tirés au hasard
+ * (au moyen de générateurs de graine fixe, afin que les résultats soient reproductibles).
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+class TrailTest {
+
+    private static final int NETWORKS_COUNT = 500;
+
+    @Test
+    void longestOfEmptyNetworkIsEmpty() {
+
+        Trail trail = Trail.longest(List.of());
+
+        assertEquals(0, trail.length());
+        assertNull(trail.station1());
+        assertNull(trail.station2());
+    }
+
+    @Test
+    void longestMatchesExhaustiveSearchOnChMapSubsets() {
+
+        Random rng = new Random(2021);
+        for (int n = 0; n < NETWORKS_COUNT; n++) {
+            List<Route> routes = new ArrayList<Route>(ChMap.routes());
+            Collections.shuffle(routes, rng);
+            checkLongest(routes.subList(0, 1 + rng.nextInt(16)));
+        }
+    }
+
+    @Test
+    void longestMatchesExhaustiveSearchOnDenseNetworks() {
+
+        // Peu de gares pour beaucoup de routes : nombreux cycles, routes parallèles et gares de degré impair.
+        Random rng = new Random(2022);
+        for (int n = 0; n < NETWORKS_COUNT; n++) {
+            int stationsCount = 2 + rng.nextInt(5);
+            List<Station> stations = new ArrayList<Station>();
+            for (int s = 0; s < stationsCount; s++)
+                stations.add(new Station(s, "S" + s));
+
+            List<Route> routes = new ArrayList<Route>();
+            int routesCount = 1 + rng.nextInt(8);
+            for (int r = 0; r < routesCount; r++) {
+                int s1 = rng.nextInt(stationsCount);
+                int s2 = (s1 + 1 + rng.nextInt(stationsCount - 1)) % stationsCount;
+                routes.add(new Route("R" + r, stations.get(s1), stations.get(s2), 1 + rng.nextInt(6), Route.Level.OVERGROUND, null));
+            }
+            checkLongest(routes);
+        }
+    }
+
+    @Test
+    void longestIgnoresDuplicateRoutes() {
+
+        Route route = ChMap.routes().get(0);
+
+        assertEquals(route.length(), Trail.longest(List.of(route, route)).length());
+    }
+
+    private static void checkLongest(List<Route> routes) {
+
+        Trail trail = Trail.longest(routes);
+        String message = routes.toString();
+
+        assertEquals(exhaustiveLongestLength(routes), trail.length(), message);
+        assertTrue(isEndpoint(routes, trail.station1()), message);
+        assertTrue(isEndpoint(routes, trail.station2()), message);
+    }
+
+    private static boolean isEndpoint(List<Route> routes, Station station) {
+
+        for (Route route : routes) {
+            if (route.stations().contains(station))
+                return true;
+        }
+
+        return false;
+    }
+
+    // Longueur du plus long chemin, obtenue en prolongeant de toutes les manières possibles un chemin partant de chaque gare.
+    private static int exhaustiveLongestLength(List<Route> routes) {
+
+        int longest = 0;
+        boolean[] used = new boolean[routes.size()];
+        for (Route route : routes) {
+            for (Station station : route.stations())
+                longest = Math.max(longest, exhaustiveLongestLength(routes, used, station));
+        }
+
+        return longest;
+    }
+
+    private static int exhaustiveLongestLength(List<Route> routes, boolean[] used, Station from) {
+
+        int longest = 0;
+        for (int r = 0; r < routes.size(); r++) {
+            Route route = routes.get(r);
+            if (used[r] || !route.stations().contains(from))
+                continue;
+
+            used[r] = true;
+            longest = Math.max(longest, route.length() + exhaustiveLongestLength(routes, used, route.stationOpposite(from)));
+            used[r] = false;
+        }
+
+        return longest;
+    }
+}
@@ -0,0 +1,161 @@
+package ch.epfl.tchu.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.tchu.SortedBag;
+
+/**
+ * Vérifie que les clefs de Zobrist maintenues incrémentalement par GameState et GameEngine sont égales à celles
+ * calculées entièrement à partir des composantes de l'état, et qu'elles distinguent les états différents.
+ *
+ * @author Ilias Marwane Merigh (330316)
+ */
+class ZobristTest {
+
+    private static final int GAMES_COUNT = 30;
+    private static final int STEPS_COUNT = 300;
+
+    @Test
+    void positionHashMatchesFullComputationAlongRandomGames() {
+
+        SplittableRandom rng = new SplittableRandom(2017);
+        for (int game = 0; game < GAMES_COUNT; game++) {
+            GameState state = GameState.initial(SortedBag.of(ChMap.tickets()), new SplittableRandom(game));
+            assertHashesAreCorrect(state);
+
+            for (PlayerId id : PlayerId.ALL) {
+                SortedBag<Ticket> drawnTickets = state.topTickets(Constants.INITIAL_TICKETS_COUNT);
+                state = state.withoutTopTickets(Constants.INITIAL_TICKETS_COUNT);
+                assertHashesAreCorrect(state);
+                state = state.withInitiallyChosenTickets(id, drawnTickets);
+                assertHashesAreCorrect(state);
+            }
+
+            for (int step = 0; step < STEPS_COUNT; step++) {
+                state = randomStep(state, rng);
+                assertHashesAreCorrect(state);
+            }
+        }
+    }
+
+    @Test
+    void positionHashDistinguishesPairsOfCountryTickets() {
+
+        // Les billets pays à pays figurent deux fois dans ChMap : les clefs de leurs deux exemplaires ne doivent pas s'annuler.
+        List<Ticket> countryTickets = duplicatedTickets();
+        assertTrue(countryTickets.size() >= 2);
+
+        GameState initial = GameState.initial(SortedBag.of(ChMap.tickets()), new SplittableRandom(2017));
+        List<Long> hashes = new ArrayList<Long>();
+        for (Ticket ticket : countryTickets) {
+            GameState state = initial.withInitiallyChosenTickets(PlayerId.PLAYER_1, SortedBag.of(2, ticket));
+
+            assertEquals(recomputedPositionHash(state), state.positionHash());
+            assertTrue(!hashes.contains(state.positionHash()), ticket.toString());
+            hashes.add(state.positionHash());
+        }
+    }
+
+    @Test
+    void positionHashDistinguishesOneAndTwoCopiesOfATicket() {
+
+        Ticket ticket = duplicatedTickets().get(0);
+        Ticket other = duplicatedTickets().get(1);
+        GameState start = GameState.initial(SortedBag.of(ChMap.tickets()), new SplittableRandom(2017));
+        GameState initial = start.withInitiallyChosenTickets(start.currentPlayerId(), SortedBag.of(ticket));
+
+        // Le second exemplaire est ajouté à la main du joueur courant, qui possède déjà le premier.
+        SortedBag<Ticket> drawnTickets = SortedBag.of(1, ticket, 1, other);
+        GameState twoCopies = initial.withChosenAdditionalTickets(drawnTickets, SortedBag.of(ticket));
+        GameState twoTickets = initial.withChosenAdditionalTickets(drawnTickets, SortedBag.of(other));
+
+        assertEquals(recomputedPositionHash(twoCopies), twoCopies.positionHash());
+        assertEquals(recomputedPositionHash(twoTickets), twoTickets.positionHash());
+        assertNotEquals(twoCopies.positionHash(), twoTickets.positionHash());
+        assertNotEquals(initial.positionHash(), twoCopies.positionHash());
+
+        GameEngine engine = new GameEngine(initial);
+        engine.apply(GameEngine.Action.chooseTickets(drawnTickets, SortedBag.of(ticket)));
+        assertEquals(twoCopies.positionHash(), engine.positionHash());
+    }
+
+    // Retourne l'état suivant l'état donné, au moyen d'une transition tirée au hasard. Les joueurs gardent tous les billets
+    // tirés, afin de finir par posséder les deux exemplaires de certains billets pays à pays.
+    private static GameState randomStep(GameState state, SplittableRandom rng) {
+
+        if (state.cardState().isDeckEmpty())
+            return state.withCardsDeckRecreatedIfNeeded(new SplittableRandom(rng.nextLong()));
+
+        switch (rng.nextInt(6)) {
+        case 0:
+            if (!state.canDrawCards())
+                break;
+            return state.withDrawnFaceUpCard(rng.nextInt(Constants.FACE_UP_CARDS_COUNT));
+        case 1:
+            if (!state.canDrawCards())
+                break;
+            return state.withBlindlyDrawnCard();
+        case 2:
+            LegalActions legalActions = LegalActions.of(state);
+            List<Route> routes = legalActions.claimableRoutes().toList();
+            if (routes.isEmpty())
+                break;
+            Route route = routes.get(rng.nextInt(routes.size()));
+            return state.withClaimedRoute(route, legalActions.claimCards(route).get(0));
+        case 3:
+            if (!state.canDrawTickets())
+                break;
+            SortedBag<Ticket> drawnTickets = state.topTickets(Math.min(Constants.IN_GAME_TICKETS_COUNT, state.ticketsCount()));
+            return state.withChosenAdditionalTickets(drawnTickets, drawnTickets);
+        case 4:
+            // La carte du sommet de la pioche est défaussée, comme lors de la prise d'un tunnel.
+            return state.withoutTopCard().withMoreDiscardedCards(SortedBag.of(state.topCard()));
+        default:
+            break;
+        }
+
+        return state.forNextTurn();
+    }
+
+    private static void assertHashesAreCorrect(GameState state) {
+
+        GameState recomputed = recomputedState(state);
+
+        assertEquals(recomputed.positionHash(), state.positionHash());
+        assertEquals(recomputed.publicPositionHash(), state.publicPositionHash());
+    }
+
+    // Billets figurant plus d'une fois dans ChMap, c-à-d les billets pays à pays.
+    private static List<Ticket> duplicatedTickets() {
+
+        List<Ticket> tickets = new ArrayList<Ticket>();
+        for (Ticket ticket : ChMap.tickets()) {
+            if (ChMap.ticketIndex(ticket, 1) >= 0 && !tickets.contains(ticket))
+                tickets.add(ticket);
+        }
+
+        return tickets;
+    }
+
+    private static long recomputedPositionHash(GameState state) {
+        return recomputedState(state).positionHash();
+    }
+
+    // Etat identique à celui donné, dont les clefs de hachage sont calculées entièrement, à partir de ses composantes.
+    private static GameState recomputedState(GameState state) {
+
+        PlayerState[] playerState = new PlayerState[PlayerId.COUNT];
+        for (PlayerId id : PlayerId.ALL)
+            playerState[id.ordinal()] = state.playerState(id);
+
+        return GameState.of(state.ticketDeck(), state.completeCardState(), state.currentPlayerId(), playerState, state.lastPlayer());
+    }
+}